@@ -50,7 +50,7 @@ public class AnalyticsKafkaConsumer implements KafkaConsumer<TwitterAnalyticsAvr
 
     @EventListener
     public void onAppStarted(ApplicationStartedEvent event) {
-        kafkaAdminClient.checkTopicsCreated();
+        kafkaAdminClient.checkReadiness();
         LOG.info("Topics with name {} is ready for operations!", kafkaConfig.getTopicNamesToCreate().toArray());
         kafkaListenerEndpointRegistry.getListenerContainer("twitterAnalyticsTopicListener").start();
     }
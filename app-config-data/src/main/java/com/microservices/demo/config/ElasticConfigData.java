@@ -4,6 +4,8 @@ import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.List;
+
 @Data
 @Configuration
 @ConfigurationProperties(prefix = "elastic-config")
@@ -12,4 +14,76 @@ public class ElasticConfigData {
     private String connectionUrl;
     private Integer connectTimeoutMs;
     private Integer socketTimeoutMs;
+    private String versionSource;
+    private Boolean routingByUserId;
+    private BulkIngester bulkIngester;
+    private BulkRetry bulkRetry;
+    private RollingIndex rollingIndex;
+    private IndexTemplate indexTemplate;
+    private NdjsonBulk ndjsonBulk;
+    private ReactiveIndexClient reactiveIndexClient;
+
+    @Data
+    public static class BulkIngester {
+        private Boolean enabled;
+        private Integer maxOperations;
+        private Long maxSizeBytes;
+        private Long flushIntervalMs;
+        private Integer maxConcurrentRequests;
+    }
+
+    // maxBatchSize, maxBatchBytes and maxConcurrentBatches bound the bulk requests of ElasticBulkIndexUtil, used by the
+    // typed index clients and the NDJSON fast path. The retry and backoff settings apply to all index clients.
+    @Data
+    public static class BulkRetry {
+        private Integer maxBatchSize;
+        private Long maxBatchBytes;
+        private Integer maxConcurrentBatches;
+        private Integer maxRetries;
+        private Long initialBackoffMs;
+        private Double backoffMultiplier;
+        private Long maxBackoffMs;
+    }
+
+    // With rolling indices enabled, index-name is the write alias in the indexing service and the read alias in the
+    // query services
+    @Data
+    public static class RollingIndex {
+        private Boolean enabled;
+        private Boolean manageAliases;
+        private String indexPrefix;
+        private String writeAlias;
+        private String readAlias;
+        private String period;
+        private Long maxPrimaryShardSizeBytes;
+        private Long checkIntervalMs;
+    }
+
+    @Data
+    public static class IndexTemplate {
+        private Boolean enabled;
+        private String name;
+        private List<String> indexPatterns;
+        private Integer priority;
+        private String settingsFile;
+        private String mappingsFile;
+        private Integer numberOfShards;
+        private Integer numberOfReplicas;
+        private String refreshInterval;
+    }
+
+    @Data
+    public static class NdjsonBulk {
+        private Boolean enabled;
+        private Integer initialBufferBytes;
+        private Integer maxRetainedBufferBytes;
+    }
+
+    @Data
+    public static class ReactiveIndexClient {
+        private Boolean enabled;
+        private Integer maxBatchSize;
+        private Long flushIntervalMs;
+        private Integer maxConcurrentRequests;
+    }
 }
@@ -4,9 +4,37 @@ import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.Map;
+
 @Data
 @Configuration
 @ConfigurationProperties(prefix = "elastic-query-config")
 public class ElasticQueryConfigData {
+    // Default index.max_result_window of elasticsearch, a query with an ids filter returns up to one hit per id
+    private static final int DEFAULT_MAX_IDS_FILTER_SIZE = 10000;
+
     private String textField;
+    private String textWordsField;
+    private String createdAtField;
+    private String userIdField;
+    private Integer streamPageSize;
+    private Long pointInTimeKeepAliveMs;
+    private Integer maxIdsFilterSize = DEFAULT_MAX_IDS_FILTER_SIZE;
+    private Cache cache;
+
+    @Data
+    public static class Cache {
+        private Boolean enabled;
+        private Boolean invalidateOnRefresh;
+        private Long refreshCheckIntervalMs;
+        // Keyed by the query type: by-id, by-text, by-text-and-time-range, by-user-id
+        private Map<String, CachePolicy> policies;
+    }
+
+    @Data
+    public static class CachePolicy {
+        private Boolean enabled;
+        private Long maximumSize;
+        private Long ttlMs;
+    }
 }
@@ -11,9 +11,13 @@ public class ElasticQueryServiceConfigData {
     private String version;
     private String customAudience;
     private Long backPressureDelayMs;
+    private Boolean permissionPreFilter;
+    private Boolean linksOnDemand;
     private WebClient webClient;
     private Query queryFromKafkaStateStore;
     private Query queryFromAnalyticsDatabase;
+    private RequestCoalescing requestCoalescing;
+    private UserPermissionCache userPermissionCache;
 
     @Data
     public static class WebClient {
@@ -24,6 +28,7 @@ public class ElasticQueryServiceConfigData {
         private String contentType;
         private String acceptType;
         private String queryType;
+        private Long wordCountTimeoutMs;
     }
 
     @Data
@@ -32,4 +37,17 @@ public class ElasticQueryServiceConfigData {
         private String accept;
         private String uri;
     }
+
+    @Data
+    public static class RequestCoalescing {
+        private Boolean enabled;
+        private Long maxWaitMs;
+    }
+
+    @Data
+    public static class UserPermissionCache {
+        private Boolean enabled;
+        private Long maximumSize;
+        private Long ttlMs;
+    }
 }
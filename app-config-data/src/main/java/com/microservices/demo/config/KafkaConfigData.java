@@ -5,6 +5,7 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
 import java.util.List;
+import java.util.Map;
 /*
 
 The below @Configuration class = KafkaConfigData .
@@ -19,12 +20,32 @@ kafka-config:
     - twitter-topic
   number-of-partitions: 3                                              ===> numOfPartitions        (number-of-partitions:)
   replication-factor: 3                                                ===> replicationFactor       (replication-factor:)
+  readiness-timeout-ms: 60000                                          ===> readinessTimeoutMs      (readiness-timeout-ms:)
+                                                                            optional, defaults to 60000
+  topics:                                                              ===> topics                  (topics:)
+    twitter-analytics-topic:                                           ===> key of the topics map, the topic name
+      num-of-partitions: 3                                             ===> Topic.numOfPartitions   (num-of-partitions:)
+      cleanup-policy: compact                                          ===> Topic.cleanupPolicy     (cleanup-policy:)
+
+ The topics block is optional, a topic without an entry is created with numOfPartitions, replicationFactor and the
+ broker defaults. KafkaTopicConfigReconciler in kafka-admin module applies the block to existing topics.
+
+  partition-advisor:                                                   ===> partitionAdvisor        (partition-advisor:)
+    enabled: true                                                      ===> exposes the partitionadvisor actuator endpoint
+    topics:                                                            ===> topics to sample, defaults to topic-names-to-create
+      - twitter-topic
+    sample-window-ms: 10000                                            ===> time between the two offset samples
+                                                                            optional, defaults to 10000
+    headroom-factor: 2.0                                               ===> produce rate growth to plan the partitions for
+                                                                            optional, defaults to 2.0
  */
 
 @Data
 @Configuration
 @ConfigurationProperties(prefix = "kafka-config")
 public class KafkaConfigData {
+    private static final long DEFAULT_READINESS_TIMEOUT_MS = 60000L;
+
     private String bootstrapServers;
     private String schemaRegistryUrlKey;
     private String schemaRegistryUrl;
@@ -32,5 +53,28 @@ public class KafkaConfigData {
     private List<String> topicNamesToCreate;
     private Integer numOfPartitions;
     private Short replicationFactor;
+    private Long readinessTimeoutMs = DEFAULT_READINESS_TIMEOUT_MS;
+    private Map<String, Topic> topics;
+    private PartitionAdvisor partitionAdvisor;
+
+    @Data
+    public static class Topic {
+        private Integer numOfPartitions;
+        private Long retentionMs;
+        private Long segmentBytes;
+        private String compressionType;
+        private Integer minInsyncReplicas;
+        private String cleanupPolicy;
+    }
+
+    @Data
+    public static class PartitionAdvisor {
+        private static final long DEFAULT_SAMPLE_WINDOW_MS = 10000L;
+        private static final double DEFAULT_HEADROOM_FACTOR = 2.0;
 
+        private Boolean enabled;
+        private List<String> topics;
+        private Long sampleWindowMs = DEFAULT_SAMPLE_WINDOW_MS;
+        private Double headroomFactor = DEFAULT_HEADROOM_FACTOR;
+    }
 }
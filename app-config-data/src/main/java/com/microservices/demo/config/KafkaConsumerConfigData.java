@@ -9,6 +9,9 @@ import org.springframework.context.annotation.Configuration;
 @Configuration
 @ConfigurationProperties(prefix = "kafka-consumer-config")
 public class KafkaConsumerConfigData {
+    private static final long DEFAULT_FAILED_BATCH_BACK_OFF_MS = 1000L;
+    private static final int DEFAULT_MAX_IN_FLIGHT_BATCHES = 4;
+
     private String keyDeserializer;
     private String valueDeserializer;
     private String consumerGroupId;
@@ -25,4 +28,8 @@ public class KafkaConsumerConfigData {
     private Integer maxPartitionFetchBytesDefault;
     private Integer maxPartitionFetchBytesBoostFactor;
     private Long pollTimeoutMs;
+    private Boolean virtualThreadsEnabled;
+    private String ackMode;
+    private Long failedBatchBackOffMs = DEFAULT_FAILED_BATCH_BACK_OFF_MS;
+    private Integer maxInFlightBatches = DEFAULT_MAX_IN_FLIGHT_BATCHES;
 }
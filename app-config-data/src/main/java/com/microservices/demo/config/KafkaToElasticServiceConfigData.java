@@ -0,0 +1,30 @@
+package com.microservices.demo.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "kafka-to-elastic-service")
+public class KafkaToElasticServiceConfigData {
+    private Backfill backfill;
+
+    @Data
+    public static class Backfill {
+        private Boolean enabled;
+        private String fromTime;
+        private String toTime;
+        private Long fromOffset;
+        private Long toOffset;
+        private String targetIndex;
+        private String writeAlias;
+        private String readAlias;
+        private Boolean switchAliases;
+        private Boolean bulkLoadMode;
+        private Integer parallelism;
+        private Long pollTimeoutMs;
+        private Long progressIntervalMs;
+        private Boolean exitOnCompletion;
+    }
+}
@@ -1,10 +1,19 @@
 package com.microservices.demo.elastic.query.service.api;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.microservices.demo.elastic.query.service.business.ElasticQueryService;
 import com.microservices.demo.elastic.query.service.common.model.ElasticQueryServiceRequestModel;
 import com.microservices.demo.elastic.query.service.common.model.ElasticQueryServiceResponseModel;
+import com.microservices.demo.elastic.query.service.model.ElasticQueryServiceAggregationRequestModel;
+import com.microservices.demo.elastic.query.service.model.ElasticQueryServiceAggregationResponseModel;
 import com.microservices.demo.elastic.query.service.model.ElasticQueryServiceAnalyticsResponseModel;
+import com.microservices.demo.elastic.query.service.model.ElasticQueryServiceBatchRequestModel;
+import com.microservices.demo.elastic.query.service.model.ElasticQueryServiceBatchResponseModel;
+import com.microservices.demo.elastic.query.service.model.ElasticQueryServiceIdsRequestModel;
 import com.microservices.demo.elastic.query.service.model.ElasticQueryServiceResponseModelV2;
+import com.microservices.demo.elastic.query.service.security.QueryServicePermissionEvaluator;
 import com.microservices.demo.elastic.query.service.security.TwitterQueryUser;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -17,14 +26,21 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PostAuthorize;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.oauth2.client.OAuth2AuthorizedClient;
 import org.springframework.security.oauth2.client.annotation.RegisteredOAuth2AuthorizedClient;
 import org.springframework.web.bind.annotation.*;
 
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotEmpty;
+import java.io.IOException;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
 
 @PreAuthorize("isAuthenticated()")
 @RestController
@@ -32,10 +48,22 @@ import java.util.List;
 public class ElasticDocumentController {
     private static final Logger LOG = LoggerFactory.getLogger(ElasticDocumentController.class);
 
+    private static final String STREAM_CONTENT_TYPE = "application/vnd.api.v1+json";
+
+    private static final String NDJSON_CONTENT_TYPE = "application/x-ndjson";
+
     private final ElasticQueryService elasticQueryService;
 
-    public ElasticDocumentController(ElasticQueryService queryService) {
+    private final ObjectMapper objectMapper;
+
+    private final QueryServicePermissionEvaluator permissionEvaluator;
+
+    public ElasticDocumentController(ElasticQueryService queryService,
+                                     ObjectMapper mapper,
+                                     QueryServicePermissionEvaluator evaluator) {
         this.elasticQueryService = queryService;
+        this.objectMapper = mapper;
+        this.permissionEvaluator = evaluator;
     }
 
     @Value("${server.port}")
@@ -54,12 +82,49 @@ public class ElasticDocumentController {
     })
     @GetMapping("")
     public @ResponseBody
-    ResponseEntity<List<ElasticQueryServiceResponseModel>> getAllDocuments() {
-        List<ElasticQueryServiceResponseModel> response = elasticQueryService.getAllDocuments();
+    ResponseEntity<List<ElasticQueryServiceResponseModel>> getAllDocuments(Authentication authentication) {
+        List<ElasticQueryServiceResponseModel> response = elasticQueryService.getAllDocuments(
+                permissionEvaluator.getPreFilterIds(authentication, "READ"));
         LOG.info("Elasticsearch returned {} of documents", response.size());
         return ResponseEntity.ok(response);
     }
 
+    /*
+     The streaming variants of getAllDocuments write the documents to the response while they are read from
+     elasticsearch page by page, so neither the documents nor the response body are held in memory and the first
+     documents are sent before the last page is read. The response is committed with the first bytes, so it can not be
+     rejected as a whole after the last document like getAllDocuments; instead the documents the user has no READ
+     permission for are left out.
+     */
+    @Operation(summary = "Stream all elastic documents as a json array.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successful response.", content = {
+                    @Content(mediaType = "application/vnd.api.v1+json",
+                            schema = @Schema(implementation = ElasticQueryServiceResponseModel.class)
+                    )
+            }),
+            @ApiResponse(responseCode = "500", description = "Internal server error.")
+    })
+    @GetMapping("/stream")
+    public void streamAllDocuments(Authentication authentication, HttpServletResponse response) throws IOException {
+        writeAllDocuments(authentication, response, STREAM_CONTENT_TYPE, false);
+    }
+
+    // One json document per line, selected on GET /documents with Accept: application/x-ndjson
+    @Operation(summary = "Stream all elastic documents as newline delimited json.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successful response.", content = {
+                    @Content(mediaType = "application/x-ndjson",
+                            schema = @Schema(implementation = ElasticQueryServiceResponseModel.class)
+                    )
+            }),
+            @ApiResponse(responseCode = "500", description = "Internal server error.")
+    })
+    @GetMapping(value = "", produces = NDJSON_CONTENT_TYPE)
+    public void streamAllDocumentsAsNdjson(Authentication authentication,
+                                           HttpServletResponse response) throws IOException {
+        writeAllDocuments(authentication, response, NDJSON_CONTENT_TYPE, true);
+    }
 
     @PreAuthorize("hasPermission(#id, 'ElasticQueryServiceResponseModel','READ')")
     @Operation(summary = "Get elastic document by id.")
@@ -81,6 +146,61 @@ public class ElasticDocumentController {
         return ResponseEntity.ok(elasticQueryServiceResponseModel);
     }
 
+    /*
+     The documents of many ids in one multi get request. The READ permission of every id is looked up once in the
+     cached permissions of the user before the request, only the permitted ids are read, the other ids and the ids of
+     documents that do not exist are left out of the response. The returned documents are checked against the
+     permitted ids again, so a document of another id never reaches the response.
+     */
+    @Operation(summary = "Get elastic documents by ids.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successful response, the permitted documents that " +
+                    "exist.", content = {
+                    @Content(mediaType = "application/vnd.api.v1+json",
+                            schema = @Schema(implementation = ElasticQueryServiceResponseModel.class)
+                    )
+            }),
+            @ApiResponse(responseCode = "400", description = "Validation failure, no ids or more than 1000 ids."),
+            @ApiResponse(responseCode = "500", description = "Internal server error.")
+    })
+    @PostMapping("/get-documents-by-ids")
+    public @ResponseBody
+    ResponseEntity<List<ElasticQueryServiceResponseModel>>
+    getDocumentsByIds(@RequestBody @Valid ElasticQueryServiceIdsRequestModel elasticQueryServiceIdsRequestModel,
+                      Authentication authentication) {
+        List<String> ids = elasticQueryServiceIdsRequestModel.getIds().stream().distinct().toList();
+        List<String> permittedIds = permissionEvaluator.filterPermittedIds(authentication, ids, "READ");
+        Set<String> permittedIdSet = Set.copyOf(permittedIds);
+        List<ElasticQueryServiceResponseModel> response = permittedIds.isEmpty() ? List.of() :
+                elasticQueryService.getDocumentsByIds(permittedIds).stream()
+                        .filter(responseModel -> permittedIdSet.contains(responseModel.getId()))
+                        .toList();
+        LOG.info("Elasticsearch returned {} of documents for {} ids, {} permitted, on port {}", response.size(),
+                ids.size(), permittedIds.size(), port);
+        return ResponseEntity.ok(response);
+    }
+
+    @PostAuthorize("hasPermission(returnObject, 'READ')")
+    @Operation(summary = "Get elastic documents of a user.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successful response.", content = {
+                    @Content(mediaType = "application/vnd.api.v1+json",
+                            schema = @Schema(implementation = ElasticQueryServiceResponseModel.class)
+                    )
+            }),
+            @ApiResponse(responseCode = "400", description = "Not found."),
+            @ApiResponse(responseCode = "500", description = "Internal server error.")
+    })
+    @GetMapping("/user/{userId}")
+    public @ResponseBody
+    ResponseEntity<List<ElasticQueryServiceResponseModel>>
+    getDocumentsByUserId(@PathVariable Long userId, Authentication authentication) {
+        List<ElasticQueryServiceResponseModel> response = elasticQueryService.getDocumentsByUserId(userId,
+                permissionEvaluator.getPreFilterIds(authentication, "READ"));
+        LOG.info("Elasticsearch returned {} of documents for user id {} on port {}", response.size(), userId, port);
+        return ResponseEntity.ok(response);
+    }
+
     @Operation(summary = "Get elastic document by id.")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Successful response.", content = {
@@ -120,18 +240,160 @@ public class ElasticDocumentController {
     getDocumentByText(@RequestBody @Valid ElasticQueryServiceRequestModel elasticQueryServiceRequestModel,
                       @AuthenticationPrincipal TwitterQueryUser principal,
                       @RegisteredOAuth2AuthorizedClient("keycloak")
-                              OAuth2AuthorizedClient oAuth2AuthorizedClient) {
+                              OAuth2AuthorizedClient oAuth2AuthorizedClient,
+                      Authentication authentication) {
         LOG.info("User {} querying documents for text {}", principal.getUsername(),
                 elasticQueryServiceRequestModel.getText());
 
         ElasticQueryServiceAnalyticsResponseModel response =
                 elasticQueryService.getDocumentByText(elasticQueryServiceRequestModel.getText(),
-                        oAuth2AuthorizedClient.getAccessToken().getTokenValue());
+                        oAuth2AuthorizedClient.getAccessToken().getTokenValue(),
+                        permissionEvaluator.getPreFilterIds(authentication, "READ"));
         LOG.info("Elasticsearch returned {} of documents on port {}",
                 response.getQueryResponseModels().size(), port);
         return ResponseEntity.ok(response);
     }
 
+    /*
+     The documents of all texts in one multi search request. The READ permission is part of every query, the user only
+     gets the documents it can read instead of the whole response being rejected, and the word counts are not
+     requested, get-document-by-text returns them.
+     */
+    @PreAuthorize("hasRole('APP_USER_ROLE') || hasRole('APP_SUPER_USER_ROLE') || hasAuthority('SCOPE_APP_USER_ROLE')")
+    @Operation(summary = "Get elastic documents of multiple texts.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successful response.", content = {
+                    @Content(mediaType = "application/vnd.api.v1+json",
+                            schema = @Schema(implementation = ElasticQueryServiceBatchResponseModel.class)
+                    )
+            }),
+            @ApiResponse(responseCode = "400", description = "Not found."),
+            @ApiResponse(responseCode = "500", description = "Internal server error.")
+    })
+    @PostMapping("/get-documents-by-texts")
+    public @ResponseBody
+    ResponseEntity<ElasticQueryServiceBatchResponseModel>
+    getDocumentsByTexts(@RequestBody @Valid ElasticQueryServiceBatchRequestModel elasticQueryServiceBatchRequestModel,
+                        Authentication authentication) {
+        List<String> texts = elasticQueryServiceBatchRequestModel.getTexts();
+        LOG.info("User {} querying documents for {} texts", authentication.getName(), texts.size());
+        Set<String> permittedIds = permissionEvaluator.getPermittedIds(authentication, "READ");
+        Map<String, List<ElasticQueryServiceResponseModel>> response =
+                elasticQueryService.getDocumentsByTexts(texts, permittedIds);
+        LOG.info("Elasticsearch returned documents of {} texts on port {}", response.size(), port);
+        return ResponseEntity.ok(ElasticQueryServiceBatchResponseModel.builder()
+                .queryResponseModelsByText(response)
+                .build());
+    }
+
+    /*
+     Aggregations of the documents between from and to (ISO date times, both optional), computed in elasticsearch with
+     size 0, so only the buckets are returned instead of the documents. Like get-documents-by-texts, only the documents
+     the user can read are counted.
+     */
+    @PreAuthorize("hasRole('APP_USER_ROLE') || hasRole('APP_SUPER_USER_ROLE') || hasAuthority('SCOPE_APP_USER_ROLE')")
+    @Operation(summary = "Get the most frequent words of the elastic document texts.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successful response.", content = {
+                    @Content(mediaType = "application/vnd.api.v1+json",
+                            schema = @Schema(implementation = ElasticQueryServiceAggregationResponseModel.class)
+                    )
+            }),
+            @ApiResponse(responseCode = "400", description = "Not found."),
+            @ApiResponse(responseCode = "500", description = "Internal server error.")
+    })
+    @GetMapping("/aggregations/terms")
+    public @ResponseBody
+    ResponseEntity<ElasticQueryServiceAggregationResponseModel>
+    getTextTermCounts(@Valid ElasticQueryServiceAggregationRequestModel aggregationRequestModel,
+                      Authentication authentication) {
+        Set<String> permittedIds = permissionEvaluator.getPermittedIds(authentication, "READ");
+        ElasticQueryServiceAggregationResponseModel response =
+                elasticQueryService.getTextTermCounts(aggregationRequestModel, permittedIds);
+        LOG.info("Elasticsearch returned {} buckets on port {}", response.getBuckets().size(), port);
+        return ResponseEntity.ok(response);
+    }
+
+    @PreAuthorize("hasRole('APP_USER_ROLE') || hasRole('APP_SUPER_USER_ROLE') || hasAuthority('SCOPE_APP_USER_ROLE')")
+    @Operation(summary = "Get the number of elastic documents per time interval.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successful response.", content = {
+                    @Content(mediaType = "application/vnd.api.v1+json",
+                            schema = @Schema(implementation = ElasticQueryServiceAggregationResponseModel.class)
+                    )
+            }),
+            @ApiResponse(responseCode = "400", description = "Not found."),
+            @ApiResponse(responseCode = "500", description = "Internal server error.")
+    })
+    @GetMapping("/aggregations/date-histogram")
+    public @ResponseBody
+    ResponseEntity<ElasticQueryServiceAggregationResponseModel>
+    getDocumentCountsByInterval(@Valid ElasticQueryServiceAggregationRequestModel aggregationRequestModel,
+                                Authentication authentication) {
+        Set<String> permittedIds = permissionEvaluator.getPermittedIds(authentication, "READ");
+        ElasticQueryServiceAggregationResponseModel response =
+                elasticQueryService.getDocumentCountsByInterval(aggregationRequestModel, permittedIds);
+        LOG.info("Elasticsearch returned {} buckets on port {}", response.getBuckets().size(), port);
+        return ResponseEntity.ok(response);
+    }
+
+    @PreAuthorize("hasRole('APP_USER_ROLE') || hasRole('APP_SUPER_USER_ROLE') || hasAuthority('SCOPE_APP_USER_ROLE')")
+    @Operation(summary = "Get the users with the most elastic documents.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successful response.", content = {
+                    @Content(mediaType = "application/vnd.api.v1+json",
+                            schema = @Schema(implementation = ElasticQueryServiceAggregationResponseModel.class)
+                    )
+            }),
+            @ApiResponse(responseCode = "400", description = "Not found."),
+            @ApiResponse(responseCode = "500", description = "Internal server error.")
+    })
+    @GetMapping("/aggregations/top-users")
+    public @ResponseBody
+    ResponseEntity<ElasticQueryServiceAggregationResponseModel>
+    getDocumentCountsByUserId(@Valid ElasticQueryServiceAggregationRequestModel aggregationRequestModel,
+                              Authentication authentication) {
+        Set<String> permittedIds = permissionEvaluator.getPermittedIds(authentication, "READ");
+        ElasticQueryServiceAggregationResponseModel response =
+                elasticQueryService.getDocumentCountsByUserId(aggregationRequestModel, permittedIds);
+        LOG.info("Elasticsearch returned {} buckets on port {}", response.getBuckets().size(), port);
+        return ResponseEntity.ok(response);
+    }
+
+    private void writeAllDocuments(Authentication authentication,
+                                   HttpServletResponse response,
+                                   String contentType,
+                                   boolean ndjson) throws IOException {
+        response.setContentType(contentType);
+        long documentCount = 0;
+        Set<String> preFilterIds = permissionEvaluator.getPreFilterIds(authentication, "READ");
+        try (Stream<ElasticQueryServiceResponseModel> documents = elasticQueryService.streamAllDocuments(preFilterIds);
+             JsonGenerator generator = objectMapper.getFactory().createGenerator(response.getOutputStream())) {
+            Iterator<ElasticQueryServiceResponseModel> readableDocuments = documents
+                    .filter(document -> permissionEvaluator.hasPermission(authentication, document.getId(),
+                            "ElasticQueryServiceResponseModel", "READ"))
+                    .iterator();
+            if (ndjson) {
+                // Written between the documents, instead of the default space
+                generator.setRootValueSeparator(new SerializedString("\n"));
+            } else {
+                generator.writeStartArray();
+            }
+            while (readableDocuments.hasNext()) {
+                generator.writeObject(readableDocuments.next());
+                documentCount++;
+            }
+            if (ndjson) {
+                if (documentCount > 0) {
+                    generator.writeRaw('\n');
+                }
+            } else {
+                generator.writeEndArray();
+            }
+        }
+        LOG.info("Elasticsearch streamed {} of documents as {} on port {}", documentCount, contentType, port);
+    }
+
     private ElasticQueryServiceResponseModelV2 getV2Model(ElasticQueryServiceResponseModel responseModel) {
         ElasticQueryServiceResponseModelV2 responseModelV2 = ElasticQueryServiceResponseModelV2.builder()
                 .id(Long.parseLong(responseModel.getId()))
@@ -0,0 +1,52 @@
+package com.microservices.demo.elastic.query.service.api;
+
+import com.microservices.demo.elastic.query.service.security.UserPermissionCache;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import jakarta.validation.constraints.NotEmpty;
+
+// Drops cached user permissions after they were changed in the database, so they are read again with the next request
+@PreAuthorize("hasRole('APP_SUPER_USER_ROLE')")
+@RestController
+@RequestMapping(value = "/user-permissions/cache")
+public class UserPermissionCacheController {
+
+    private static final Logger LOG = LoggerFactory.getLogger(UserPermissionCacheController.class);
+
+    private final UserPermissionCache userPermissionCache;
+
+    public UserPermissionCacheController(UserPermissionCache permissionCache) {
+        this.userPermissionCache = permissionCache;
+    }
+
+    @Operation(summary = "Invalidate the cached permissions of all users.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "204", description = "Cached permissions invalidated."),
+            @ApiResponse(responseCode = "500", description = "Internal server error.")
+    })
+    @DeleteMapping("")
+    public ResponseEntity<Void> invalidateAll() {
+        LOG.info("Invalidating the cached permissions of all users");
+        userPermissionCache.invalidateAll();
+        return ResponseEntity.noContent().build();
+    }
+
+    @Operation(summary = "Invalidate the cached permissions of a user.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "204", description = "Cached permissions invalidated."),
+            @ApiResponse(responseCode = "500", description = "Internal server error.")
+    })
+    @DeleteMapping("/{username}")
+    public ResponseEntity<Void> invalidate(@PathVariable @NotEmpty String username) {
+        LOG.info("Invalidating the cached permissions of user {}", username);
+        userPermissionCache.invalidate(username);
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -1,15 +1,42 @@
 package com.microservices.demo.elastic.query.service.business;
 
 import com.microservices.demo.elastic.query.service.common.model.ElasticQueryServiceResponseModel;
+import com.microservices.demo.elastic.query.service.model.ElasticQueryServiceAggregationRequestModel;
+import com.microservices.demo.elastic.query.service.model.ElasticQueryServiceAggregationResponseModel;
 import com.microservices.demo.elastic.query.service.model.ElasticQueryServiceAnalyticsResponseModel;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
 
 public interface ElasticQueryService {
 
     ElasticQueryServiceResponseModel getDocumentById(String id);
 
-    ElasticQueryServiceAnalyticsResponseModel getDocumentByText(String text, String accessToken);
+    List<ElasticQueryServiceResponseModel> getDocumentsByIds(Collection<String> ids);
 
-    List<ElasticQueryServiceResponseModel> getAllDocuments();
+    // permittedIds restricts the documents to these ids, null returns all documents
+    ElasticQueryServiceAnalyticsResponseModel getDocumentByText(String text, String accessToken,
+                                                                Collection<String> permittedIds);
+
+    Map<String, List<ElasticQueryServiceResponseModel>> getDocumentsByTexts(List<String> texts,
+                                                                        Collection<String> permittedIds);
+
+    List<ElasticQueryServiceResponseModel> getDocumentsByUserId(Long userId, Collection<String> permittedIds);
+
+    List<ElasticQueryServiceResponseModel> getAllDocuments(Collection<String> permittedIds);
+
+    // The aggregations count the documents of permittedIds, null counts all documents
+    ElasticQueryServiceAggregationResponseModel getTextTermCounts(ElasticQueryServiceAggregationRequestModel request,
+                                                                  Collection<String> permittedIds);
+
+    ElasticQueryServiceAggregationResponseModel getDocumentCountsByInterval(
+            ElasticQueryServiceAggregationRequestModel request, Collection<String> permittedIds);
+
+    ElasticQueryServiceAggregationResponseModel getDocumentCountsByUserId(
+            ElasticQueryServiceAggregationRequestModel request, Collection<String> permittedIds);
+
+    // Has to be closed after use, see ElasticQueryClient.streamAllIndexModels
+    Stream<ElasticQueryServiceResponseModel> streamAllDocuments(Collection<String> permittedIds);
 }
@@ -5,11 +5,16 @@ import com.microservices.demo.elastic.model.index.impl.TwitterIndexModel;
 import com.microservices.demo.elastic.query.client.service.ElasticQueryClient;
 import com.microservices.demo.elastic.query.service.QueryType;
 import com.microservices.demo.elastic.query.service.business.ElasticQueryService;
+import com.microservices.demo.elastic.query.service.coalescing.SingleFlightRequestCoalescer;
 import com.microservices.demo.elastic.query.service.common.exception.ElasticQueryServiceException;
 import com.microservices.demo.elastic.query.service.common.model.ElasticQueryServiceResponseModel;
+import com.microservices.demo.elastic.query.service.model.ElasticQueryServiceAggregationRequestModel;
+import com.microservices.demo.elastic.query.service.model.ElasticQueryServiceAggregationResponseModel;
 import com.microservices.demo.elastic.query.service.model.ElasticQueryServiceAnalyticsResponseModel;
 import com.microservices.demo.elastic.query.service.model.ElasticQueryServiceWordCountResponseModel;
 import com.microservices.demo.elastic.query.service.model.assembler.ElasticQueryServiceResponseModelAssembler;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
@@ -22,7 +27,16 @@ import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Mono;
 
+import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Stream;
 
 import static com.microservices.demo.mdc.Constants.CORRELATION_ID_HEADER;
 import static com.microservices.demo.mdc.Constants.CORRELATION_ID_KEY;
@@ -40,15 +54,23 @@ public class TwitterElasticQueryService implements ElasticQueryService {
 
     private final WebClient.Builder webClientBuilder;
 
+    private final SingleFlightRequestCoalescer singleFlightRequestCoalescer;
+
+    private final Counter wordCountTimeoutsCounter;
+
     public TwitterElasticQueryService(ElasticQueryServiceResponseModelAssembler assembler,
                                       ElasticQueryClient<TwitterIndexModel> queryClient,
                                       ElasticQueryServiceConfigData queryServiceConfigData,
                                       @Qualifier("webClientBuilder")
-                                              WebClient.Builder clientBuilder) {
+                                              WebClient.Builder clientBuilder,
+                                      SingleFlightRequestCoalescer requestCoalescer,
+                                      MeterRegistry registry) {
         this.elasticQueryServiceResponseModelAssembler = assembler;
         this.elasticQueryClient = queryClient;
         this.elasticQueryServiceConfigData = queryServiceConfigData;
         this.webClientBuilder = clientBuilder;
+        this.singleFlightRequestCoalescer = requestCoalescer;
+        this.wordCountTimeoutsCounter = registry.counter("elastic.query.word.count.timeouts");
     }
 
     @Override
@@ -58,47 +80,164 @@ public class TwitterElasticQueryService implements ElasticQueryService {
     }
 
     @Override
-    public ElasticQueryServiceAnalyticsResponseModel getDocumentByText(String text, String accessToken) {
-        LOG.info("Querying elasticsearch by text {}", text);
-        List<ElasticQueryServiceResponseModel> elasticQueryServiceResponseModels =
-                elasticQueryServiceResponseModelAssembler.toModels(elasticQueryClient.getIndexModelByText(text));
+    public List<ElasticQueryServiceResponseModel> getDocumentsByIds(Collection<String> ids) {
+        LOG.info("Querying elasticsearch by {} ids", ids.size());
+        return elasticQueryServiceResponseModelAssembler.toModels(elasticQueryClient.getIndexModelsByIds(ids));
+    }
+
+    /*
+     Concurrent requests with the same text share one elasticsearch query and word count call. The access token is the
+     client credentials token of the service, it is the same for all users, and the READ permission is checked on the
+     response of every caller, so every caller builds its own response models, with the links of its request, from
+     the shared documents. Requests restricted to permitted ids only share the query with requests restricted to the
+     same ids.
+     */
+    @Override
+    public ElasticQueryServiceAnalyticsResponseModel getDocumentByText(String text, String accessToken,
+                                                                       Collection<String> permittedIds) {
+        String key = "text:" + text + "|ids:" + (permittedIds == null ? "*" :
+                String.join(",", new TreeSet<>(permittedIds)));
+        TextQueryResult textQueryResult = singleFlightRequestCoalescer.execute(key,
+                () -> queryDocumentByText(text, accessToken, permittedIds));
         return ElasticQueryServiceAnalyticsResponseModel.builder()
-                .queryResponseModels(elasticQueryServiceResponseModels)
-                .wordCount(getWordCount(text, accessToken))
+                .queryResponseModels(elasticQueryServiceResponseModelAssembler.toModels(textQueryResult.indexModels()))
+                .wordCount(textQueryResult.wordCount())
                 .build();
     }
 
     @Override
-    public List<ElasticQueryServiceResponseModel> getAllDocuments() {
+    public Map<String, List<ElasticQueryServiceResponseModel>> getDocumentsByTexts(List<String> texts,
+                                                                               Collection<String> permittedIds) {
+        LOG.info("Querying elasticsearch by {} texts", texts.size());
+        Map<String, List<ElasticQueryServiceResponseModel>> responseModelsByText = new LinkedHashMap<>();
+        elasticQueryClient.getIndexModelsByTexts(texts, permittedIds).forEach((text, indexModels) ->
+                responseModelsByText.put(text, elasticQueryServiceResponseModelAssembler.toModels(indexModels)));
+        return responseModelsByText;
+    }
+
+    @Override
+    public List<ElasticQueryServiceResponseModel> getDocumentsByUserId(Long userId,
+                                                                       Collection<String> permittedIds) {
+        LOG.info("Querying elasticsearch by user id {}", userId);
+        return elasticQueryServiceResponseModelAssembler.toModels(elasticQueryClient.getIndexModelByUserId(userId,
+                permittedIds));
+    }
+
+    @Override
+    public List<ElasticQueryServiceResponseModel> getAllDocuments(Collection<String> permittedIds) {
         LOG.info("Querying all documents in elasticsearch");
-        return elasticQueryServiceResponseModelAssembler.toModels(elasticQueryClient.getAllIndexModels());
+        return elasticQueryServiceResponseModelAssembler.toModels(elasticQueryClient.getAllIndexModels(permittedIds));
+    }
+
+    @Override
+    public ElasticQueryServiceAggregationResponseModel getTextTermCounts(
+            ElasticQueryServiceAggregationRequestModel request, Collection<String> permittedIds) {
+        LOG.info("Aggregating the {} most frequent words between {} and {}", request.getSize(), request.getFrom(),
+                request.getTo());
+        return getAggregationResponseModel(elasticQueryClient.getTextTermCounts(request.getFrom(), request.getTo(),
+                request.getSize(), permittedIds));
     }
 
-    private Long getWordCount(String text, String accessToken) {
+    @Override
+    public ElasticQueryServiceAggregationResponseModel getDocumentCountsByInterval(
+            ElasticQueryServiceAggregationRequestModel request, Collection<String> permittedIds) {
+        LOG.info("Aggregating documents with text {} by interval {} between {} and {}", request.getText(),
+                request.getInterval(), request.getFrom(), request.getTo());
+        return getAggregationResponseModel(elasticQueryClient.getDocumentCountsByInterval(request.getText(),
+                request.getFrom(), request.getTo(), request.getInterval(), permittedIds));
+    }
+
+    @Override
+    public ElasticQueryServiceAggregationResponseModel getDocumentCountsByUserId(
+            ElasticQueryServiceAggregationRequestModel request, Collection<String> permittedIds) {
+        LOG.info("Aggregating the {} users with the most documents between {} and {}", request.getSize(),
+                request.getFrom(), request.getTo());
+        return getAggregationResponseModel(elasticQueryClient.getDocumentCountsByUserId(request.getFrom(),
+                request.getTo(), request.getSize(), permittedIds));
+    }
+
+    @Override
+    public Stream<ElasticQueryServiceResponseModel> streamAllDocuments(Collection<String> permittedIds) {
+        LOG.info("Streaming all documents in elasticsearch");
+        return elasticQueryClient.streamAllIndexModels(permittedIds)
+                .map(elasticQueryServiceResponseModelAssembler.getModelMapper());
+    }
+
+    private ElasticQueryServiceAggregationResponseModel getAggregationResponseModel(Map<String, Long> counts) {
+        return ElasticQueryServiceAggregationResponseModel.builder()
+                .buckets(counts.entrySet().stream()
+                        .map(count -> new ElasticQueryServiceAggregationResponseModel.Bucket(count.getKey(),
+                                count.getValue()))
+                        .toList())
+                .build();
+    }
+
+    /*
+     The word count request is sent before elasticsearch is queried and its response is awaited after the query, so
+     the request takes the longer of the two calls instead of their sum. The elasticsearch query runs on the request
+     thread with its MDC and security context. A word count that is not received within word-count-timeout-ms is left
+     out (null) instead of failing the request, it is counted in elastic.query.word.count.timeouts.
+     */
+    private TextQueryResult queryDocumentByText(String text, String accessToken, Collection<String> permittedIds) {
+        CompletableFuture<Long> wordCountFuture = getWordCount(text, accessToken);
+        LOG.info("Querying elasticsearch by text {}", text);
+        List<TwitterIndexModel> indexModels = List.copyOf(elasticQueryClient.getIndexModelByText(text, permittedIds));
+        return new TextQueryResult(indexModels, awaitWordCount(wordCountFuture));
+    }
+
+    private Long awaitWordCount(CompletableFuture<Long> wordCountFuture) {
+        try {
+            return wordCountFuture.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new ElasticQueryServiceException("Word count could not be retrieved", e.getCause());
+        }
+    }
+
+    private CompletableFuture<Long> getWordCount(String text, String accessToken) {
         if (QueryType.KAFKA_STATE_STORE.getType().equals(elasticQueryServiceConfigData.getWebClient().getQueryType())) {
-            return getFromKafkaStateStore(text, accessToken).getWordCount();
+            return getFromKafkaStateStore(text, accessToken);
         } else if (QueryType.ANALYTICS_DATABASE.getType().
                 equals(elasticQueryServiceConfigData.getWebClient().getQueryType())) {
-            return getFromAnayticsDatabase(text, accessToken).getWordCount();
+            return getFromAnayticsDatabase(text, accessToken);
         }
-        return 0L;
+        return CompletableFuture.completedFuture(0L);
     }
 
-    private ElasticQueryServiceWordCountResponseModel getFromAnayticsDatabase(String text, String accessToken) {
+    private CompletableFuture<Long> getFromAnayticsDatabase(String text, String accessToken) {
         ElasticQueryServiceConfigData.Query queryFromAnalyticsDatabase =
                 elasticQueryServiceConfigData.getQueryFromAnalyticsDatabase();
-        return retrieveResponseModel(text, accessToken, queryFromAnalyticsDatabase);
+        return retrieveWordCount(text, accessToken, queryFromAnalyticsDatabase);
     }
 
-    private ElasticQueryServiceWordCountResponseModel getFromKafkaStateStore(String text, String accessToken) {
+    private CompletableFuture<Long> getFromKafkaStateStore(String text, String accessToken) {
         ElasticQueryServiceConfigData.Query queryFromKafkaStateStore =
                 elasticQueryServiceConfigData.getQueryFromKafkaStateStore();
-        return retrieveResponseModel(text, accessToken, queryFromKafkaStateStore);
+        return retrieveWordCount(text, accessToken, queryFromKafkaStateStore);
     }
 
-    private ElasticQueryServiceWordCountResponseModel retrieveResponseModel(String text,
-                                                                            String accessToken,
-                                                                            ElasticQueryServiceConfigData.Query query) {
+    private CompletableFuture<Long> retrieveWordCount(String text,
+                                                      String accessToken,
+                                                      ElasticQueryServiceConfigData.Query query) {
+        long wordCountTimeoutMs = elasticQueryServiceConfigData.getWebClient().getWordCountTimeoutMs();
+        return retrieveResponseModel(text, accessToken, query)
+                .map(ElasticQueryServiceWordCountResponseModel::getWordCount)
+                .timeout(Duration.ofMillis(wordCountTimeoutMs))
+                .onErrorResume(TimeoutException.class, e -> {
+                    LOG.warn("Word count of text {} was not received in {} ms, returning documents without it",
+                            text, wordCountTimeoutMs);
+                    wordCountTimeoutsCounter.increment();
+                    return Mono.empty();
+                })
+                .toFuture();
+    }
+
+    private Mono<ElasticQueryServiceWordCountResponseModel> retrieveResponseModel(String text,
+                                                                                  String accessToken,
+                                                                                  ElasticQueryServiceConfigData.Query
+                                                                                          query) {
         return webClientBuilder
                 .build()
                 .method(HttpMethod.valueOf(query.getMethod()))
@@ -120,8 +259,10 @@ public class TwitterElasticQueryService implements ElasticQueryService {
                         s -> s.equals(HttpStatus.INTERNAL_SERVER_ERROR),
                         clientResponse -> Mono.just(new Exception(clientResponse.statusCode().toString())))
                 .bodyToMono(ElasticQueryServiceWordCountResponseModel.class)
-                .log()
-                .block();
+                .log();
+    }
 
+    // The documents and word count of a text query, shared by coalesced requests
+    private record TextQueryResult(List<TwitterIndexModel> indexModels, Long wordCount) {
     }
 }
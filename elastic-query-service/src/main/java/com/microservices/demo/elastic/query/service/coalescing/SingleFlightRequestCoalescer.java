@@ -0,0 +1,91 @@
+package com.microservices.demo.elastic.query.service.coalescing;
+
+import com.microservices.demo.config.ElasticQueryServiceConfigData;
+import com.microservices.demo.elastic.query.service.common.exception.ElasticQueryServiceException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/*
+ Coalesces concurrent identical requests into a single flight.
+
+ (1) The first request of a key registers a pending future and runs the supplier on its own thread, so the MDC
+     correlation id and the security context of that request are used for the downstream calls.
+ (2) Requests with the same key that arrive while the future is pending wait for it instead of running the supplier,
+     they are counted in elastic.query.coalesced.requests. A failure of the shared call is thrown to all of them.
+ (3) The future is removed when it completes, a later request runs a new query, so no result is served after the
+     request that produced it completed.
+ (4) A waiting request runs the supplier itself if the shared call did not complete within max-wait-ms, a slow
+     query does not hold every caller of the key longer than a request of its own would.
+
+ The shared result is the same object for all callers, callers that change it have to copy it first.
+ */
+@Component
+public class SingleFlightRequestCoalescer {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SingleFlightRequestCoalescer.class);
+
+    private final ElasticQueryServiceConfigData.RequestCoalescing requestCoalescing;
+
+    private final Map<String, CompletableFuture<Object>> inFlightRequests = new ConcurrentHashMap<>();
+
+    private final Counter coalescedRequestsCounter;
+
+    public SingleFlightRequestCoalescer(ElasticQueryServiceConfigData configData, MeterRegistry registry) {
+        this.requestCoalescing = configData.getRequestCoalescing();
+        this.coalescedRequestsCounter = registry.counter("elastic.query.coalesced.requests");
+    }
+
+    @SuppressWarnings("unchecked")
+    public <V> V execute(String key, Supplier<V> supplier) {
+        if (requestCoalescing == null || !Boolean.TRUE.equals(requestCoalescing.getEnabled())) {
+            return supplier.get();
+        }
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        CompletableFuture<Object> inFlightRequest = inFlightRequests.putIfAbsent(key, future);
+        if (inFlightRequest != null) {
+            coalescedRequestsCounter.increment();
+            LOG.debug("Waiting for the in flight request of key {}", key);
+            return (V) await(inFlightRequest, key, supplier);
+        }
+        try {
+            V result = supplier.get();
+            future.complete(result);
+            return result;
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlightRequests.remove(key, future);
+        }
+    }
+
+    private <V> Object await(CompletableFuture<Object> inFlightRequest, String key, Supplier<V> supplier) {
+        try {
+            return inFlightRequest.get(requestCoalescing.getMaxWaitMs(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            LOG.warn("In flight request of key {} did not complete in {} ms, running a new request", key,
+                    requestCoalescing.getMaxWaitMs());
+            return supplier.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new ElasticQueryServiceException("In flight request of key " + key + " failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ElasticQueryServiceException("Interrupted while waiting for the in flight request of key " +
+                    key, e);
+        }
+    }
+}
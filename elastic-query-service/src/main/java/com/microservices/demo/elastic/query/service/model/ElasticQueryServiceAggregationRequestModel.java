@@ -0,0 +1,32 @@
+package com.microservices.demo.elastic.query.service.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.Pattern;
+import java.time.ZonedDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ElasticQueryServiceAggregationRequestModel {
+    private String text;
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private ZonedDateTime from;
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private ZonedDateTime to;
+    // A fixed interval of elasticsearch in minutes, hours or days, e.g. 30m, 1h or 1d
+    @Builder.Default
+    @Pattern(regexp = "[1-9][0-9]*[mhd]")
+    private String interval = "1h";
+    @Builder.Default
+    @Min(1)
+    @Max(1000)
+    private Integer size = 10;
+}
@@ -0,0 +1,20 @@
+package com.microservices.demo.elastic.query.service.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ElasticQueryServiceBatchRequestModel {
+    @NotEmpty
+    @Size(max = 100)
+    private List<@NotEmpty String> texts;
+}
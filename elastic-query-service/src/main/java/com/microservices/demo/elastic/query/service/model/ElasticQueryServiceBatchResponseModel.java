@@ -0,0 +1,18 @@
+package com.microservices.demo.elastic.query.service.model;
+
+import com.microservices.demo.elastic.query.service.common.model.ElasticQueryServiceResponseModel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ElasticQueryServiceBatchResponseModel {
+    private Map<String, List<ElasticQueryServiceResponseModel>> queryResponseModelsByText;
+}
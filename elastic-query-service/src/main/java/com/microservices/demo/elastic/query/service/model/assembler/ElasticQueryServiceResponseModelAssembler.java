@@ -1,47 +1,84 @@
 package com.microservices.demo.elastic.query.service.model.assembler;
 
+import com.microservices.demo.config.ElasticQueryServiceConfigData;
 import com.microservices.demo.elastic.model.index.impl.TwitterIndexModel;
 import com.microservices.demo.elastic.query.service.api.ElasticDocumentController;
 import com.microservices.demo.elastic.query.service.common.model.ElasticQueryServiceResponseModel;
 import com.microservices.demo.elastic.query.service.common.transformer.ElasticToResponseModelTransformer;
+import org.springframework.hateoas.Link;
 import org.springframework.hateoas.server.mvc.RepresentationModelAssemblerSupport;
 import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.util.UriUtils;
 
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.linkTo;
-import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.methodOn;
 
+/*
+ Adds the self and documents links to the response models.
+
+ (1) The uri of the documents is resolved from the current request once for all documents of a list or a stream, the
+     self link of a document is that uri with the encoded id appended, which is the uri of getDocumentById. Building
+     the self link with methodOn for every document invoked a proxy of the controller and built the uri from the
+     request again for every document.
+ (2) With elastic-query-service.links-on-demand the links are only added if the request has the parameter
+     links=true, a client that does not follow the links does not pay for them.
+ */
 @Component
 public class ElasticQueryServiceResponseModelAssembler
         extends RepresentationModelAssemblerSupport<TwitterIndexModel, ElasticQueryServiceResponseModel> {
 
+    private static final String LINKS_PARAMETER = "links";
+
     private final ElasticToResponseModelTransformer elasticToResponseModelTransformer;
 
-    public ElasticQueryServiceResponseModelAssembler(ElasticToResponseModelTransformer transformer) {
+    private final ElasticQueryServiceConfigData elasticQueryServiceConfigData;
+
+    public ElasticQueryServiceResponseModelAssembler(ElasticToResponseModelTransformer transformer,
+                                                     ElasticQueryServiceConfigData queryServiceConfigData) {
         super(ElasticDocumentController.class, ElasticQueryServiceResponseModel.class);
         this.elasticToResponseModelTransformer = transformer;
+        this.elasticQueryServiceConfigData = queryServiceConfigData;
     }
 
     @Override
     public ElasticQueryServiceResponseModel toModel(TwitterIndexModel twitterIndexModel) {
-        ElasticQueryServiceResponseModel responseModel =
-                elasticToResponseModelTransformer.getResponseModel(twitterIndexModel);
-        responseModel.add(
-                linkTo(methodOn(ElasticDocumentController.class)
-                        .getDocumentById((twitterIndexModel.getId())))
-                        .withSelfRel());
-        responseModel.add(
-                linkTo(ElasticDocumentController.class)
-                        .withRel("documents"));
-        return responseModel;
+        return getModelMapper().apply(twitterIndexModel);
     }
 
     public List<ElasticQueryServiceResponseModel> toModels(List<TwitterIndexModel> twitterIndexModels) {
-        return twitterIndexModels.stream().map(this::toModel).collect(Collectors.toList());
+        return twitterIndexModels.stream().map(getModelMapper()).collect(Collectors.toList());
     }
 
+    // Resolves the links of the current request, it has to be called on the request thread
+    public Function<TwitterIndexModel, ElasticQueryServiceResponseModel> getModelMapper() {
+        if (!isLinksRequested()) {
+            return elasticToResponseModelTransformer::getResponseModel;
+        }
+        Link documentsLink = linkTo(ElasticDocumentController.class).withRel("documents");
+        String documentsHref = documentsLink.getHref();
+        return twitterIndexModel -> {
+            ElasticQueryServiceResponseModel responseModel =
+                    elasticToResponseModelTransformer.getResponseModel(twitterIndexModel);
+            responseModel.add(Link.of(documentsHref + "/" +
+                    UriUtils.encodePathSegment(twitterIndexModel.getId(), StandardCharsets.UTF_8)).withSelfRel());
+            responseModel.add(documentsLink);
+            return responseModel;
+        };
+    }
 
+    private boolean isLinksRequested() {
+        if (!Boolean.TRUE.equals(elasticQueryServiceConfigData.getLinksOnDemand())) {
+            return true;
+        }
+        RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+        return requestAttributes instanceof ServletRequestAttributes servletRequestAttributes &&
+                Boolean.parseBoolean(servletRequestAttributes.getRequest().getParameter(LINKS_PARAMETER));
+    }
 }
-
@@ -0,0 +1,167 @@
+package com.microservices.demo.elastic.query.service.security;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/*
+ Immutable map of document id to the permission of a user, kept in sorted arrays instead of hash map entries.
+
+ (1) Numeric document ids (the tweet ids) are stored in a sorted long[], other ids in a sorted String[], the permission
+     of every id as the PermissionType ordinal in a parallel byte[].
+ (2) A lookup is a binary search, an entry takes 9 bytes for a numeric id instead of the ~100 bytes of a HashMap node
+     with its String key and value reference.
+ (3) The ids are converted back to strings while iterating, which only the permission pre filter of the queries does.
+ */
+public final class CompactPermissionMap extends AbstractMap<String, PermissionType> {
+
+    private static final PermissionType[] PERMISSION_TYPES = PermissionType.values();
+
+    private static final int ARRAY_OVERHEAD_BYTES = 16;
+
+    private static final int STRING_OVERHEAD_BYTES = 40;
+
+    private final long[] numericIds;
+
+    private final byte[] numericPermissions;
+
+    private final String[] otherIds;
+
+    private final byte[] otherPermissions;
+
+    private CompactPermissionMap(long[] numericIds, byte[] numericPermissions,
+                                 String[] otherIds, byte[] otherPermissions) {
+        this.numericIds = numericIds;
+        this.numericPermissions = numericPermissions;
+        this.otherIds = otherIds;
+        this.otherPermissions = otherPermissions;
+    }
+
+    public static CompactPermissionMap of(Map<String, PermissionType> permissions) {
+        List<Map.Entry<Long, PermissionType>> numericEntries = new ArrayList<>();
+        List<Map.Entry<String, PermissionType>> otherEntries = new ArrayList<>();
+        permissions.forEach((id, permission) -> {
+            Long numericId = toNumericId(id);
+            if (numericId != null) {
+                numericEntries.add(Map.entry(numericId, permission));
+            } else {
+                otherEntries.add(Map.entry(id, permission));
+            }
+        });
+        numericEntries.sort(Map.Entry.comparingByKey());
+        otherEntries.sort(Map.Entry.comparingByKey());
+
+        long[] numericIds = new long[numericEntries.size()];
+        byte[] numericPermissions = new byte[numericEntries.size()];
+        for (int i = 0; i < numericIds.length; i++) {
+            numericIds[i] = numericEntries.get(i).getKey();
+            numericPermissions[i] = (byte) numericEntries.get(i).getValue().ordinal();
+        }
+        String[] otherIds = new String[otherEntries.size()];
+        byte[] otherPermissions = new byte[otherEntries.size()];
+        for (int i = 0; i < otherIds.length; i++) {
+            otherIds[i] = otherEntries.get(i).getKey();
+            otherPermissions[i] = (byte) otherEntries.get(i).getValue().ordinal();
+        }
+        return new CompactPermissionMap(numericIds, numericPermissions, otherIds, otherPermissions);
+    }
+
+    @Override
+    public PermissionType get(Object key) {
+        if (!(key instanceof String id)) {
+            return null;
+        }
+        Long numericId = toNumericId(id);
+        if (numericId != null) {
+            int index = Arrays.binarySearch(numericIds, numericId);
+            return index < 0 ? null : PERMISSION_TYPES[numericPermissions[index]];
+        }
+        int index = Arrays.binarySearch(otherIds, id);
+        return index < 0 ? null : PERMISSION_TYPES[otherPermissions[index]];
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public int size() {
+        return numericIds.length + otherIds.length;
+    }
+
+    @Override
+    public Set<Entry<String, PermissionType>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<String, PermissionType>> iterator() {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                return CompactPermissionMap.this.size();
+            }
+        };
+    }
+
+    // The retained size of the arrays, used for the memory footprint of the permission cache
+    public long estimateSizeBytes() {
+        long sizeBytes = 4L * ARRAY_OVERHEAD_BYTES + numericIds.length * 9L + otherIds.length * 5L;
+        for (String otherId : otherIds) {
+            sizeBytes += STRING_OVERHEAD_BYTES + otherId.length();
+        }
+        return sizeBytes;
+    }
+
+    // An id is numeric if it is the decimal string of a long, so "007" stays a string and maps back to itself
+    private static Long toNumericId(String id) {
+        if (id.isEmpty() || id.length() > 19) {
+            return null;
+        }
+        for (int i = 0; i < id.length(); i++) {
+            char c = id.charAt(i);
+            if (c < '0' || c > '9' || (i == 0 && c == '0' && id.length() > 1)) {
+                return null;
+            }
+        }
+        try {
+            return Long.parseLong(id);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private class EntryIterator implements Iterator<Entry<String, PermissionType>> {
+
+        private int index;
+
+        @Override
+        public boolean hasNext() {
+            return index < size();
+        }
+
+        @Override
+        public Entry<String, PermissionType> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Entry<String, PermissionType> entry;
+            if (index < numericIds.length) {
+                entry = new SimpleImmutableEntry<>(String.valueOf(numericIds[index]),
+                        PERMISSION_TYPES[numericPermissions[index]]);
+            } else {
+                int otherIndex = index - numericIds.length;
+                entry = new SimpleImmutableEntry<>(otherIds[otherIndex], PERMISSION_TYPES[otherPermissions[otherIndex]]);
+            }
+            index++;
+            return entry;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.microservices.demo.elastic.query.service.security;
 
+import com.microservices.demo.config.ElasticQueryServiceConfigData;
 import com.microservices.demo.elastic.query.service.common.model.ElasticQueryServiceRequestModel;
 import com.microservices.demo.elastic.query.service.common.model.ElasticQueryServiceResponseModel;
 import com.microservices.demo.elastic.query.service.model.ElasticQueryServiceAnalyticsResponseModel;
@@ -10,8 +11,12 @@ import org.springframework.stereotype.Component;
 
 import jakarta.servlet.http.HttpServletRequest;
 import java.io.Serializable;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @Component
 public class QueryServicePermissionEvaluator implements PermissionEvaluator {
@@ -20,11 +25,14 @@ public class QueryServicePermissionEvaluator implements PermissionEvaluator {
 
     private final HttpServletRequest httpServletRequest;
 
-    public QueryServicePermissionEvaluator(HttpServletRequest request) {
+    private final ElasticQueryServiceConfigData elasticQueryServiceConfigData;
+
+    public QueryServicePermissionEvaluator(HttpServletRequest request,
+                                           ElasticQueryServiceConfigData queryServiceConfigData) {
         this.httpServletRequest = request;
+        this.elasticQueryServiceConfigData = queryServiceConfigData;
     }
 
-    @SuppressWarnings("unchecked")
     @Override
     public boolean hasPermission(Authentication authentication,
                                  Object targetDomain,
@@ -38,10 +46,9 @@ public class QueryServicePermissionEvaluator implements PermissionEvaluator {
             if (targetDomain == null) {
                 return true;
             }
-            ElasticQueryServiceAnalyticsResponseModel responseBody =
-                    ((ResponseEntity<ElasticQueryServiceAnalyticsResponseModel>) targetDomain).getBody();
+            Object responseBody = ((ResponseEntity<?>) targetDomain).getBody();
             Objects.requireNonNull(responseBody);
-            return postAuthorize(authentication, responseBody.getQueryResponseModels(), permission);
+            return postAuthorize(authentication, getResponseModels(responseBody), permission);
         }
         return false;
     }
@@ -61,15 +68,71 @@ public class QueryServicePermissionEvaluator implements PermissionEvaluator {
         return preAuthorize(authentication, (String) targetId, permission);
     }
 
+    /*
+     The ids of the documents the user has the permission for, so a query can be restricted to them instead of
+     checking its results. Null for a super user, who has the permission for all documents.
+     */
+    public Set<String> getPermittedIds(Authentication authentication, String permission) {
+        if (isSuperUser()) {
+            return null;
+        }
+        TwitterQueryUser twitterQueryUser = (TwitterQueryUser) authentication.getPrincipal();
+        return twitterQueryUser.getPermissions().entrySet().stream()
+                .filter(entry -> hasPermission(permission, entry.getValue()))
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toSet());
+    }
+
+    // The ids of the given ids the user has the permission for, each looked up once in the permissions of the user
+    public List<String> filterPermittedIds(Authentication authentication, Collection<String> ids, String permission) {
+        if (isSuperUser()) {
+            return List.copyOf(ids);
+        }
+        return ids.stream()
+                .filter(id -> preAuthorize(authentication, id, permission))
+                .toList();
+    }
+
+    /*
+     The ids the document queries are restricted to with elastic-query-service.permission-pre-filter, so only the
+     documents the user has the permission for are fetched and the post authorization of the response always passes.
+     Null if the pre filter is disabled or for a super user, the queries are not restricted then.
+     */
+    public Set<String> getPreFilterIds(Authentication authentication, String permission) {
+        if (!Boolean.TRUE.equals(elasticQueryServiceConfigData.getPermissionPreFilter())) {
+            return null;
+        }
+        return getPermittedIds(authentication, permission);
+    }
+
     private boolean preAuthorize(Authentication authentication, String id, Object permission) {
         TwitterQueryUser twitterQueryUser = (TwitterQueryUser) authentication.getPrincipal();
         PermissionType userPermission = twitterQueryUser.getPermissions().get(id);
         return hasPermission((String) permission, userPermission);
     }
 
+    /*
+     The documents of a post authorized response body: the analytics response of get-document-by-text, or the list of
+     GET /documents and /documents/user/{userId}. Any other body is denied instead of failing with a cast.
+     */
+    @SuppressWarnings("unchecked")
+    private List<ElasticQueryServiceResponseModel> getResponseModels(Object responseBody) {
+        if (responseBody instanceof ElasticQueryServiceAnalyticsResponseModel analyticsResponseModel) {
+            return analyticsResponseModel.getQueryResponseModels();
+        }
+        if (responseBody instanceof List<?> responseModels && responseModels.stream()
+                .allMatch(ElasticQueryServiceResponseModel.class::isInstance)) {
+            return (List<ElasticQueryServiceResponseModel>) responseModels;
+        }
+        return null;
+    }
+
     private boolean postAuthorize(Authentication authentication,
                                   List<ElasticQueryServiceResponseModel> responseBody,
                                   Object permission) {
+        if (responseBody == null) {
+            return false;
+        }
         TwitterQueryUser twitterQueryUser = (TwitterQueryUser) authentication.getPrincipal();
         for (ElasticQueryServiceResponseModel responseModel : responseBody) {
             PermissionType userPermission = twitterQueryUser.getPermissions().get(responseModel.getId());
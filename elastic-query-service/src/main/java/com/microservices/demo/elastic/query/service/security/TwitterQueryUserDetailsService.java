@@ -14,17 +14,30 @@ public class TwitterQueryUserDetailsService implements UserDetailsService {
 
     private final UserPermissionsToUserDetailTransformer userPermissionsToUserDetailTransformer;
 
+    private final UserPermissionCache userPermissionCache;
+
     public TwitterQueryUserDetailsService(QueryUserService userService,
-                                          UserPermissionsToUserDetailTransformer transformer) {
+                                          UserPermissionsToUserDetailTransformer transformer,
+                                          UserPermissionCache permissionCache) {
         this.queryUserService = userService;
         this.userPermissionsToUserDetailTransformer = transformer;
+        this.userPermissionCache = permissionCache;
     }
 
+    // A new user for every call, the permissions are shared with the other users of the name through the cache
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
+        return TwitterQueryUser.builder()
+                .username(username)
+                .permissions(userPermissionCache.get(username, this::loadPermissions))
+                .build();
+    }
+
+    private CompactPermissionMap loadPermissions(String username) {
         return queryUserService
                 .findAllPermissionsByUsername(username)
-                .map(userPermissionsToUserDetailTransformer::getUserDetails)
+                .filter(userPermissions -> !userPermissions.isEmpty())
+                .map(userPermissionsToUserDetailTransformer::getPermissions)
                 .orElseThrow(
                         () -> new UsernameNotFoundException("No user found with name " + username));
     }
@@ -0,0 +1,91 @@
+package com.microservices.demo.elastic.query.service.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.microservices.demo.config.ElasticQueryServiceConfigData;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.function.Function;
+
+/*
+ Caches the document permissions of the authenticated users, so the permission join of the database is not run on
+ every request (elastic-query-service.user-permission-cache).
+
+ (1) A bounded caffeine cache of maximum-size users, an entry is read again from the database ttl-ms after it was
+     loaded. Concurrent requests of a user that is not cached wait for one database query, users that are not found
+     are not cached.
+ (2) The permissions are cached as an immutable CompactPermissionMap, every request gets its own TwitterQueryUser
+     with the cached permissions, as the authorities of the user are set from the token of the request.
+ (3) Database queries are counted in user.permissions.database.loads, the cache is bound to micrometer as
+     user.permissions (cache.gets hit / miss, cache.size, cache.evictions) and the estimated bytes of the cached
+     permissions are published as user.permissions.cache.bytes.
+ */
+@Component
+public class UserPermissionCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(UserPermissionCache.class);
+
+    private static final String CACHE_NAME = "user.permissions";
+
+    private final Cache<String, CompactPermissionMap> cache;
+
+    private final Counter databaseLoadsCounter;
+
+    public UserPermissionCache(ElasticQueryServiceConfigData configData, MeterRegistry registry) {
+        ElasticQueryServiceConfigData.UserPermissionCache cacheConfig = configData.getUserPermissionCache();
+        this.databaseLoadsCounter = registry.counter("user.permissions.database.loads");
+        if (cacheConfig == null || !Boolean.TRUE.equals(cacheConfig.getEnabled())) {
+            this.cache = null;
+            return;
+        }
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(cacheConfig.getMaximumSize())
+                .expireAfterWrite(Duration.ofMillis(cacheConfig.getTtlMs()))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(registry, cache, CACHE_NAME);
+        Gauge.builder("user.permissions.cache.bytes", cache, this::getCachedBytes)
+                .baseUnit("bytes")
+                .register(registry);
+        LOG.info("User permission cache with maximum size {} and ttl {} ms", cacheConfig.getMaximumSize(),
+                cacheConfig.getTtlMs());
+    }
+
+    public CompactPermissionMap get(String username, Function<String, CompactPermissionMap> databaseLoader) {
+        Function<String, CompactPermissionMap> countingLoader = name -> {
+            databaseLoadsCounter.increment();
+            return databaseLoader.apply(name);
+        };
+        if (cache == null) {
+            return countingLoader.apply(username);
+        }
+        return cache.get(username, countingLoader);
+    }
+
+    public void invalidate(String username) {
+        if (cache != null) {
+            cache.invalidate(username);
+            LOG.info("Invalidated the cached permissions of user {}", username);
+        }
+    }
+
+    public void invalidateAll() {
+        if (cache != null) {
+            cache.invalidateAll();
+            LOG.info("Invalidated the cached permissions of all users");
+        }
+    }
+
+    private double getCachedBytes(Cache<String, CompactPermissionMap> permissionCache) {
+        return permissionCache.asMap().values().stream()
+                .mapToLong(CompactPermissionMap::estimateSizeBytes)
+                .sum();
+    }
+}
@@ -1,6 +1,7 @@
 package com.microservices.demo.elastic.query.service.transformer;
 
 import com.microservices.demo.elastic.query.service.dataaccess.entity.UserPermission;
+import com.microservices.demo.elastic.query.service.security.CompactPermissionMap;
 import com.microservices.demo.elastic.query.service.security.PermissionType;
 import com.microservices.demo.elastic.query.service.security.TwitterQueryUser;
 import org.springframework.stereotype.Component;
@@ -14,10 +15,14 @@ public class UserPermissionsToUserDetailTransformer {
     public TwitterQueryUser getUserDetails(List<UserPermission> userPermissions) {
         return TwitterQueryUser.builder()
                 .username(userPermissions.get(0).getUsername())
-                .permissions(userPermissions.stream()
-                        .collect(Collectors.toMap(
-                                UserPermission::getDocumentId,
-                                permission -> PermissionType.valueOf(permission.getPermissionType()))))
+                .permissions(getPermissions(userPermissions))
                 .build();
     }
+
+    public CompactPermissionMap getPermissions(List<UserPermission> userPermissions) {
+        return CompactPermissionMap.of(userPermissions.stream()
+                .collect(Collectors.toMap(
+                        UserPermission::getDocumentId,
+                        permission -> PermissionType.valueOf(permission.getPermissionType()))));
+    }
 }
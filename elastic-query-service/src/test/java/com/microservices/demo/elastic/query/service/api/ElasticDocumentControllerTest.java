@@ -0,0 +1,117 @@
+package com.microservices.demo.elastic.query.service.api;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.microservices.demo.config.ElasticQueryServiceConfigData;
+import com.microservices.demo.elastic.query.service.business.ElasticQueryService;
+import com.microservices.demo.elastic.query.service.common.model.ElasticQueryServiceResponseModel;
+import com.microservices.demo.elastic.query.service.model.ElasticQueryServiceIdsRequestModel;
+import com.microservices.demo.elastic.query.service.security.CompactPermissionMap;
+import com.microservices.demo.elastic.query.service.security.PermissionType;
+import com.microservices.demo.elastic.query.service.security.QueryServicePermissionEvaluator;
+import com.microservices.demo.elastic.query.service.security.TwitterQueryUser;
+import jakarta.servlet.http.HttpServletRequest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ElasticDocumentControllerTest {
+
+    private static final String SUPER_USER_ROLE = "APP_SUPER_USER_ROLE";
+
+    private ElasticQueryService elasticQueryService;
+
+    private HttpServletRequest httpServletRequest;
+
+    private ElasticDocumentController elasticDocumentController;
+
+    private Authentication authentication;
+
+    @BeforeEach
+    public void setUp() {
+        elasticQueryService = mock(ElasticQueryService.class);
+        httpServletRequest = mock(HttpServletRequest.class);
+        QueryServicePermissionEvaluator permissionEvaluator =
+                new QueryServicePermissionEvaluator(httpServletRequest, new ElasticQueryServiceConfigData());
+        elasticDocumentController = new ElasticDocumentController(elasticQueryService, new ObjectMapper(),
+                permissionEvaluator);
+        TwitterQueryUser twitterQueryUser = TwitterQueryUser.builder()
+                .username("test")
+                .permissions(CompactPermissionMap.of(Map.of(
+                        "1", PermissionType.READ,
+                        "2", PermissionType.WRITE,
+                        "3", PermissionType.READ)))
+                .build();
+        authentication = new UsernamePasswordAuthenticationToken(twitterQueryUser, null);
+    }
+
+    @Test
+    public void testGetDocumentsByIdsReadsOnlyPermittedIds() {
+        // 1 is permitted and exists, 2 has no READ permission, 3 is permitted and does not exist, 4 is unknown
+        when(elasticQueryService.getDocumentsByIds(List.of("1", "3"))).thenReturn(getResponseModels("1"));
+
+        ResponseEntity<List<ElasticQueryServiceResponseModel>> response =
+                elasticDocumentController.getDocumentsByIds(getRequest("1", "2", "3", "4", "1"), authentication);
+
+        verify(elasticQueryService).getDocumentsByIds(List.of("1", "3"));
+        assertEquals(List.of("1"), getIds(response));
+    }
+
+    @Test
+    public void testGetDocumentsByIdsNeverReturnsDocumentsOfOtherIds() {
+        // A query that returns more than the requested documents, e.g. a match all, must not leak them
+        when(elasticQueryService.getDocumentsByIds(List.of("1", "3"))).thenReturn(getResponseModels("1", "2", "5"));
+
+        ResponseEntity<List<ElasticQueryServiceResponseModel>> response =
+                elasticDocumentController.getDocumentsByIds(getRequest("1", "2", "3"), authentication);
+
+        assertEquals(List.of("1"), getIds(response));
+    }
+
+    @Test
+    public void testGetDocumentsByIdsWithoutPermittedIdsDoesNotQuery() {
+        ResponseEntity<List<ElasticQueryServiceResponseModel>> response =
+                elasticDocumentController.getDocumentsByIds(getRequest("2", "4"), authentication);
+
+        verify(elasticQueryService, never()).getDocumentsByIds(any());
+        assertTrue(response.getBody().isEmpty());
+    }
+
+    @Test
+    public void testGetDocumentsByIdsOfSuperUserReadsAllIds() {
+        when(httpServletRequest.isUserInRole(SUPER_USER_ROLE)).thenReturn(true);
+        when(elasticQueryService.getDocumentsByIds(List.of("1", "2", "4"))).thenReturn(getResponseModels("1", "2"));
+
+        ResponseEntity<List<ElasticQueryServiceResponseModel>> response =
+                elasticDocumentController.getDocumentsByIds(getRequest("1", "2", "4"), authentication);
+
+        assertEquals(List.of("1", "2"), getIds(response));
+    }
+
+    private ElasticQueryServiceIdsRequestModel getRequest(String... ids) {
+        return ElasticQueryServiceIdsRequestModel.builder().ids(Arrays.asList(ids)).build();
+    }
+
+    private List<ElasticQueryServiceResponseModel> getResponseModels(String... ids) {
+        return Arrays.stream(ids)
+                .map(id -> ElasticQueryServiceResponseModel.builder().id(id).text("text " + id).build())
+                .toList();
+    }
+
+    private List<String> getIds(ResponseEntity<List<ElasticQueryServiceResponseModel>> response) {
+        return response.getBody().stream().map(ElasticQueryServiceResponseModel::getId).toList();
+    }
+}
@@ -0,0 +1,180 @@
+package com.microservices.demo.elastic.query.service.coalescing;
+
+import com.microservices.demo.config.ElasticQueryServiceConfigData;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SingleFlightRequestCoalescerTest {
+
+    private static final long TIMEOUT_SECONDS = 5;
+
+    private ElasticQueryServiceConfigData.RequestCoalescing requestCoalescing;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private SingleFlightRequestCoalescer singleFlightRequestCoalescer;
+
+    private ExecutorService executorService;
+
+    private AtomicInteger supplierCalls;
+
+    @BeforeEach
+    public void setUp() {
+        requestCoalescing = new ElasticQueryServiceConfigData.RequestCoalescing();
+        requestCoalescing.setEnabled(true);
+        requestCoalescing.setMaxWaitMs(TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS));
+        ElasticQueryServiceConfigData elasticQueryServiceConfigData = new ElasticQueryServiceConfigData();
+        elasticQueryServiceConfigData.setRequestCoalescing(requestCoalescing);
+        meterRegistry = new SimpleMeterRegistry();
+        singleFlightRequestCoalescer = new SingleFlightRequestCoalescer(elasticQueryServiceConfigData, meterRegistry);
+        executorService = Executors.newFixedThreadPool(2);
+        supplierCalls = new AtomicInteger();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    @Test
+    public void testConcurrentRequestsWithSameKeyShareOneCall() throws Exception {
+        CountDownLatch supplierStarted = new CountDownLatch(1);
+        CountDownLatch releaseSupplier = new CountDownLatch(1);
+        Object result = new Object();
+
+        CompletableFuture<Object> first = CompletableFuture.supplyAsync(() -> singleFlightRequestCoalescer.execute(
+                "key", blockingSupplier(result, supplierStarted, releaseSupplier)), executorService);
+        assertTrue(supplierStarted.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        CompletableFuture<Object> second = CompletableFuture.supplyAsync(() -> singleFlightRequestCoalescer.execute(
+                "key", countingSupplier(new Object())), executorService);
+        awaitCoalescedRequests(1);
+        releaseSupplier.countDown();
+
+        assertSame(result, first.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertSame(result, second.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(1, supplierCalls.get());
+    }
+
+    @Test
+    public void testRequestAfterCompletionRunsNewCall() {
+        assertEquals("first", singleFlightRequestCoalescer.execute("key", countingSupplier("first")));
+        assertEquals("second", singleFlightRequestCoalescer.execute("key", countingSupplier("second")));
+
+        assertEquals(2, supplierCalls.get());
+        assertEquals(0.0, meterRegistry.counter("elastic.query.coalesced.requests").count());
+    }
+
+    @Test
+    public void testRequestsWithDifferentKeysAreNotCoalesced() throws Exception {
+        CountDownLatch supplierStarted = new CountDownLatch(1);
+        CountDownLatch releaseSupplier = new CountDownLatch(1);
+
+        CompletableFuture<Object> first = CompletableFuture.supplyAsync(() -> singleFlightRequestCoalescer.execute(
+                "key", blockingSupplier("first", supplierStarted, releaseSupplier)), executorService);
+        assertTrue(supplierStarted.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+        assertEquals("other", singleFlightRequestCoalescer.execute("other key", countingSupplier("other")));
+        releaseSupplier.countDown();
+        assertEquals("first", first.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(2, supplierCalls.get());
+    }
+
+    @Test
+    public void testFailureOfSharedCallIsThrownToWaitingRequest() throws Exception {
+        CountDownLatch supplierStarted = new CountDownLatch(1);
+        CountDownLatch releaseSupplier = new CountDownLatch(1);
+        IllegalStateException failure = new IllegalStateException("query failed");
+
+        CompletableFuture<Object> first = CompletableFuture.supplyAsync(() -> singleFlightRequestCoalescer.execute(
+                "key", () -> {
+                    supplierStarted.countDown();
+                    await(releaseSupplier);
+                    throw failure;
+                }), executorService);
+        assertTrue(supplierStarted.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        CompletableFuture<Object> second = CompletableFuture.supplyAsync(() -> singleFlightRequestCoalescer.execute(
+                "key", countingSupplier(new Object())), executorService);
+        awaitCoalescedRequests(1);
+        releaseSupplier.countDown();
+
+        Exception firstException = assertThrows(Exception.class, () -> first.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        Exception secondException = assertThrows(Exception.class, () -> second.get(TIMEOUT_SECONDS,
+                TimeUnit.SECONDS));
+        assertSame(failure, firstException.getCause());
+        assertSame(failure, secondException.getCause());
+        assertEquals(0, supplierCalls.get());
+    }
+
+    @Test
+    public void testWaitingRequestRunsOwnCallAfterMaxWait() throws Exception {
+        requestCoalescing.setMaxWaitMs(50L);
+        CountDownLatch supplierStarted = new CountDownLatch(1);
+        CountDownLatch releaseSupplier = new CountDownLatch(1);
+
+        CompletableFuture<Object> first = CompletableFuture.supplyAsync(() -> singleFlightRequestCoalescer.execute(
+                "key", blockingSupplier("slow", supplierStarted, releaseSupplier)), executorService);
+        assertTrue(supplierStarted.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+        assertEquals("own", singleFlightRequestCoalescer.execute("key", countingSupplier("own")));
+        releaseSupplier.countDown();
+        assertEquals("slow", first.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testDisabledCoalescingRunsEveryCall() {
+        requestCoalescing.setEnabled(false);
+
+        singleFlightRequestCoalescer.execute("key", countingSupplier("first"));
+        singleFlightRequestCoalescer.execute("key", countingSupplier("second"));
+
+        assertEquals(2, supplierCalls.get());
+    }
+
+    private <V> Supplier<V> countingSupplier(V result) {
+        return () -> {
+            supplierCalls.incrementAndGet();
+            return result;
+        };
+    }
+
+    private <V> Supplier<V> blockingSupplier(V result, CountDownLatch started, CountDownLatch release) {
+        return () -> {
+            supplierCalls.incrementAndGet();
+            started.countDown();
+            await(release);
+            return result;
+        };
+    }
+
+    private void awaitCoalescedRequests(double count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+        while (meterRegistry.counter("elastic.query.coalesced.requests").count() < count) {
+            assertTrue(System.nanoTime() < deadline, "request was not coalesced");
+            Thread.sleep(5);
+        }
+    }
+
+    private void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
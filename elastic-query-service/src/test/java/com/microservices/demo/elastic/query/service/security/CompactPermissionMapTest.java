@@ -0,0 +1,87 @@
+package com.microservices.demo.elastic.query.service.security;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CompactPermissionMapTest {
+
+    private static final Map<String, PermissionType> PERMISSIONS = Map.of(
+            "1513243210042345472", PermissionType.READ,
+            "42", PermissionType.WRITE,
+            "0", PermissionType.ADMIN,
+            "007", PermissionType.READ,
+            "doc-a", PermissionType.WRITE,
+            "99999999999999999999", PermissionType.READ);
+
+    @Test
+    public void testGetReturnsPermissionOfNumericAndOtherIds() {
+        CompactPermissionMap permissionMap = CompactPermissionMap.of(PERMISSIONS);
+
+        PERMISSIONS.forEach((id, permission) -> assertEquals(permission, permissionMap.get(id), id));
+        assertEquals(PERMISSIONS.size(), permissionMap.size());
+    }
+
+    @Test
+    public void testGetReturnsNullForMissingIds() {
+        CompactPermissionMap permissionMap = CompactPermissionMap.of(PERMISSIONS);
+
+        assertNull(permissionMap.get("7"));
+        assertNull(permissionMap.get("43"));
+        assertNull(permissionMap.get("doc-b"));
+        assertNull(permissionMap.get(""));
+        assertNull(permissionMap.get(42L));
+        assertFalse(permissionMap.containsKey("7"));
+        assertTrue(permissionMap.containsKey("007"));
+    }
+
+    @Test
+    public void testIdsWithLeadingZerosAreNotNumeric() {
+        CompactPermissionMap permissionMap = CompactPermissionMap.of(Map.of("007", PermissionType.READ));
+
+        assertEquals(PermissionType.READ, permissionMap.get("007"));
+        assertNull(permissionMap.get("7"));
+    }
+
+    @Test
+    public void testEntriesMapBackToTheOriginalIds() {
+        CompactPermissionMap permissionMap = CompactPermissionMap.of(PERMISSIONS);
+
+        assertEquals(PERMISSIONS, new HashMap<>(permissionMap));
+        assertEquals(PERMISSIONS, permissionMap);
+    }
+
+    @Test
+    public void testMapIsImmutable() {
+        CompactPermissionMap permissionMap = CompactPermissionMap.of(PERMISSIONS);
+
+        assertThrows(UnsupportedOperationException.class, () -> permissionMap.put("1", PermissionType.READ));
+        assertThrows(UnsupportedOperationException.class, () -> permissionMap.entrySet().iterator().remove());
+    }
+
+    @Test
+    public void testEmptyMap() {
+        CompactPermissionMap permissionMap = CompactPermissionMap.of(Map.of());
+
+        assertTrue(permissionMap.isEmpty());
+        assertNull(permissionMap.get("1"));
+        assertFalse(permissionMap.entrySet().iterator().hasNext());
+    }
+
+    @Test
+    public void testEstimateSizeBytesGrowsWithTheIds() {
+        long emptySizeBytes = CompactPermissionMap.of(Map.of()).estimateSizeBytes();
+
+        assertEquals(emptySizeBytes + 9, CompactPermissionMap.of(Map.of("1", PermissionType.READ))
+                .estimateSizeBytes());
+        assertTrue(CompactPermissionMap.of(Map.of("doc-a", PermissionType.READ)).estimateSizeBytes() >
+                emptySizeBytes + 9);
+    }
+}
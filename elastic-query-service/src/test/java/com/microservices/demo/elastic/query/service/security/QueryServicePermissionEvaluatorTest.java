@@ -0,0 +1,136 @@
+package com.microservices.demo.elastic.query.service.security;
+
+import com.microservices.demo.config.ElasticQueryServiceConfigData;
+import com.microservices.demo.elastic.query.service.common.model.ElasticQueryServiceResponseModel;
+import com.microservices.demo.elastic.query.service.model.ElasticQueryServiceAnalyticsResponseModel;
+import jakarta.servlet.http.HttpServletRequest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class QueryServicePermissionEvaluatorTest {
+
+    private static final String SUPER_USER_ROLE = "APP_SUPER_USER_ROLE";
+
+    private static final String READ = "READ";
+
+    private HttpServletRequest httpServletRequest;
+
+    private ElasticQueryServiceConfigData elasticQueryServiceConfigData;
+
+    private QueryServicePermissionEvaluator queryServicePermissionEvaluator;
+
+    private Authentication authentication;
+
+    @BeforeEach
+    public void setUp() {
+        httpServletRequest = mock(HttpServletRequest.class);
+        elasticQueryServiceConfigData = new ElasticQueryServiceConfigData();
+        queryServicePermissionEvaluator = new QueryServicePermissionEvaluator(httpServletRequest,
+                elasticQueryServiceConfigData);
+        TwitterQueryUser twitterQueryUser = TwitterQueryUser.builder()
+                .username("test")
+                .permissions(CompactPermissionMap.of(Map.of(
+                        "1", PermissionType.READ,
+                        "2", PermissionType.WRITE,
+                        "3", PermissionType.READ,
+                        "doc-a", PermissionType.READ)))
+                .build();
+        authentication = new UsernamePasswordAuthenticationToken(twitterQueryUser, null);
+    }
+
+    @Test
+    public void testFilterPermittedIdsKeepsPermittedIdsInRequestOrder() {
+        List<String> permittedIds = queryServicePermissionEvaluator.filterPermittedIds(authentication,
+                List.of("3", "2", "missing", "doc-a", "1"), READ);
+
+        assertEquals(List.of("3", "doc-a", "1"), permittedIds);
+    }
+
+    @Test
+    public void testFilterPermittedIdsDropsIdsWithOtherPermission() {
+        assertEquals(List.of("2"), queryServicePermissionEvaluator.filterPermittedIds(authentication,
+                List.of("1", "2", "3"), "WRITE"));
+        assertTrue(queryServicePermissionEvaluator.filterPermittedIds(authentication, List.of("2", "4"), READ)
+                .isEmpty());
+    }
+
+    @Test
+    public void testFilterPermittedIdsOfSuperUserKeepsAllIds() {
+        when(httpServletRequest.isUserInRole(SUPER_USER_ROLE)).thenReturn(true);
+
+        assertEquals(List.of("2", "missing"), queryServicePermissionEvaluator.filterPermittedIds(authentication,
+                List.of("2", "missing"), READ));
+    }
+
+    @Test
+    public void testGetPreFilterIds() {
+        assertNull(queryServicePermissionEvaluator.getPreFilterIds(authentication, READ));
+
+        elasticQueryServiceConfigData.setPermissionPreFilter(true);
+        assertEquals(Set.of("1", "3", "doc-a"), queryServicePermissionEvaluator.getPreFilterIds(authentication,
+                READ));
+
+        when(httpServletRequest.isUserInRole(SUPER_USER_ROLE)).thenReturn(true);
+        assertNull(queryServicePermissionEvaluator.getPreFilterIds(authentication, READ));
+    }
+
+    @Test
+    public void testPostAuthorizeOfListBody() {
+        assertTrue(queryServicePermissionEvaluator.hasPermission(authentication,
+                ResponseEntity.ok(getResponseModels("1", "3")), READ));
+        assertFalse(queryServicePermissionEvaluator.hasPermission(authentication,
+                ResponseEntity.ok(getResponseModels("1", "2")), READ));
+    }
+
+    @Test
+    public void testPostAuthorizeOfAnalyticsBody() {
+        ElasticQueryServiceAnalyticsResponseModel permitted = ElasticQueryServiceAnalyticsResponseModel.builder()
+                .queryResponseModels(getResponseModels("1", "doc-a"))
+                .build();
+        ElasticQueryServiceAnalyticsResponseModel notPermitted = ElasticQueryServiceAnalyticsResponseModel.builder()
+                .queryResponseModels(getResponseModels("1", "missing"))
+                .build();
+
+        assertTrue(queryServicePermissionEvaluator.hasPermission(authentication, ResponseEntity.ok(permitted), READ));
+        assertFalse(queryServicePermissionEvaluator.hasPermission(authentication, ResponseEntity.ok(notPermitted),
+                READ));
+    }
+
+    @Test
+    public void testPostAuthorizeDeniesUnknownBody() {
+        assertFalse(queryServicePermissionEvaluator.hasPermission(authentication, ResponseEntity.ok("1"), READ));
+        assertFalse(queryServicePermissionEvaluator.hasPermission(authentication,
+                ResponseEntity.ok(List.of("1")), READ));
+    }
+
+    @Test
+    public void testPreAuthorizeOfId() {
+        assertTrue(queryServicePermissionEvaluator.hasPermission(authentication, "1",
+                "ElasticQueryServiceResponseModel", READ));
+        assertFalse(queryServicePermissionEvaluator.hasPermission(authentication, "2",
+                "ElasticQueryServiceResponseModel", READ));
+        assertFalse(queryServicePermissionEvaluator.hasPermission(authentication, null,
+                "ElasticQueryServiceResponseModel", READ));
+    }
+
+    private List<ElasticQueryServiceResponseModel> getResponseModels(String... ids) {
+        return Arrays.stream(ids)
+                .map(id -> ElasticQueryServiceResponseModel.builder().id(id).build())
+                .toList();
+    }
+}
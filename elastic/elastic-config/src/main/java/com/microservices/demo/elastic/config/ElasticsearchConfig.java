@@ -1,19 +1,37 @@
 package com.microservices.demo.elastic.config;
 
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
 import com.microservices.demo.config.ElasticConfigData;
+import com.microservices.demo.elastic.config.index.ElasticIndexTemplateManager;
+import com.microservices.demo.elastic.config.index.ElasticRollingIndexManager;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.elasticsearch.client.ClientConfiguration;
 import org.springframework.data.elasticsearch.client.elc.ElasticsearchConfiguration;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.convert.ElasticsearchConverter;
 import org.springframework.data.elasticsearch.repository.config.EnableElasticsearchRepositories;
 
+import java.util.Collection;
+import java.util.Collections;
+
 @Configuration
 @EnableElasticsearchRepositories(basePackages = "com.microservices.demo.elastic")
 public class ElasticsearchConfig extends ElasticsearchConfiguration {
 
     private final ElasticConfigData elasticConfigData;
 
-    public ElasticsearchConfig(ElasticConfigData configData) {
+    private final ObjectProvider<ElasticIndexTemplateManager> elasticIndexTemplateManager;
+
+    private final ObjectProvider<ElasticRollingIndexManager> elasticRollingIndexManager;
+
+    public ElasticsearchConfig(ElasticConfigData configData,
+                               ObjectProvider<ElasticIndexTemplateManager> indexTemplateManager,
+                               ObjectProvider<ElasticRollingIndexManager> rollingIndexManager) {
         this.elasticConfigData = configData;
+        this.elasticIndexTemplateManager = indexTemplateManager;
+        this.elasticRollingIndexManager = rollingIndexManager;
     }
 
     @Override
@@ -25,5 +43,20 @@ public class ElasticsearchConfig extends ElasticsearchConfiguration {
                 .build();
     }
 
+    // The index documents are scanned up front, so their mappings are known before any repository is created
+    @Override
+    protected Collection<String> getMappingBasePackages() {
+        return Collections.singletonList("com.microservices.demo.elastic.model");
+    }
 
+    // Repositories depend on the operations, so the index template is installed and the rolling index aliases are
+    // created before a repository can create an index
+    @Override
+    @Bean(name = {"elasticsearchOperations", "elasticsearchTemplate"})
+    public ElasticsearchOperations elasticsearchOperations(ElasticsearchConverter elasticsearchConverter,
+                                                           ElasticsearchClient elasticsearchClient) {
+        elasticIndexTemplateManager.ifAvailable(ElasticIndexTemplateManager::installTemplate);
+        elasticRollingIndexManager.ifAvailable(ElasticRollingIndexManager::bootstrap);
+        return super.elasticsearchOperations(elasticsearchConverter, elasticsearchClient);
+    }
 }
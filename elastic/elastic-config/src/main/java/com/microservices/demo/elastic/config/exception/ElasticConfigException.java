@@ -0,0 +1,16 @@
+package com.microservices.demo.elastic.config.exception;
+
+public class ElasticConfigException extends RuntimeException {
+
+    public ElasticConfigException() {
+        super();
+    }
+
+    public ElasticConfigException(String message) {
+        super(message);
+    }
+
+    public ElasticConfigException(String message, Throwable t) {
+        super(message, t);
+    }
+}
@@ -0,0 +1,101 @@
+package com.microservices.demo.elastic.config.index;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch.indices.IndexSettings;
+import co.elastic.clients.elasticsearch.indices.IndexState;
+import com.microservices.demo.config.ElasticConfigData;
+import com.microservices.demo.elastic.config.exception.ElasticConfigException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ Bulk load mode for backfills: refreshes are disabled (refresh_interval -1) and the replicas are set to 0 on the
+ indices of an index name or alias, so every document is indexed once on the primary shard and no segments are
+ refreshed during the load. Leaving the bulk load mode restores the refresh interval and the replica count the indices
+ had before, or the values of elastic-config.index-template if they were not set, and refreshes the indices so the
+ loaded documents become searchable. The replicas are then recovered from the primaries by elasticsearch.
+ */
+@Component
+public class ElasticBulkLoadModeManager {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ElasticBulkLoadModeManager.class);
+
+    private static final String REFRESH_DISABLED = "-1";
+
+    private static final String NO_REPLICAS = "0";
+
+    private final ElasticConfigData elasticConfigData;
+
+    private final ElasticsearchClient elasticsearchClient;
+
+    // Settings of the indices in bulk load mode before it was enabled, keyed by the index name
+    private final Map<String, IndexSettings> previousSettings = new ConcurrentHashMap<>();
+
+    public ElasticBulkLoadModeManager(ElasticConfigData configData, ElasticsearchClient client) {
+        this.elasticConfigData = configData;
+        this.elasticsearchClient = client;
+    }
+
+    public void enableBulkLoadMode(String indexName) {
+        try {
+            Map<String, IndexState> indexStates = elasticsearchClient.indices()
+                    .getSettings(g -> g.index(indexName)).result();
+            indexStates.forEach((index, indexState) ->
+                    previousSettings.putIfAbsent(index, getIndexSettings(indexState.settings())));
+            elasticsearchClient.indices().putSettings(p -> p
+                    .index(indexName)
+                    .settings(s -> s
+                            .refreshInterval(r -> r.time(REFRESH_DISABLED))
+                            .numberOfReplicas(NO_REPLICAS)));
+            LOG.info("Bulk load mode enabled for indices {}", indexStates.keySet());
+        } catch (IOException e) {
+            throw new ElasticConfigException("Error while enabling bulk load mode for " + indexName, e);
+        }
+    }
+
+    public void disableBulkLoadMode(String indexName) {
+        try {
+            Map<String, IndexState> indexStates = elasticsearchClient.indices()
+                    .getSettings(g -> g.index(indexName)).result();
+            for (String index : indexStates.keySet()) {
+                IndexSettings settings = previousSettings.remove(index);
+                String refreshInterval = settings != null && settings.refreshInterval() != null ?
+                        settings.refreshInterval().time() : getTemplateRefreshInterval();
+                String numberOfReplicas = settings != null && settings.numberOfReplicas() != null ?
+                        settings.numberOfReplicas() : getTemplateNumberOfReplicas();
+                elasticsearchClient.indices().putSettings(p -> p
+                        .index(index)
+                        .settings(s -> s
+                                .refreshInterval(r -> r.time(refreshInterval))
+                                .numberOfReplicas(numberOfReplicas)));
+                LOG.info("Bulk load mode disabled for index {}, refresh interval {} and {} replicas restored", index,
+                        refreshInterval, numberOfReplicas);
+            }
+            elasticsearchClient.indices().refresh(r -> r.index(indexName));
+        } catch (IOException e) {
+            throw new ElasticConfigException("Error while disabling bulk load mode for " + indexName, e);
+        }
+    }
+
+    // get settings returns the index settings nested under "index"
+    private IndexSettings getIndexSettings(IndexSettings settings) {
+        return settings != null && settings.index() != null ? settings.index() : settings;
+    }
+
+    private String getTemplateRefreshInterval() {
+        ElasticConfigData.IndexTemplate indexTemplate = elasticConfigData.getIndexTemplate();
+        return indexTemplate != null && indexTemplate.getRefreshInterval() != null ?
+                indexTemplate.getRefreshInterval() : "1s";
+    }
+
+    private String getTemplateNumberOfReplicas() {
+        ElasticConfigData.IndexTemplate indexTemplate = elasticConfigData.getIndexTemplate();
+        return indexTemplate != null && indexTemplate.getNumberOfReplicas() != null ?
+                String.valueOf(indexTemplate.getNumberOfReplicas()) : "1";
+    }
+}
@@ -0,0 +1,88 @@
+package com.microservices.demo.elastic.config.index;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch.indices.update_aliases.Action;
+import com.microservices.demo.elastic.config.exception.ElasticConfigException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/*
+ Creates the indices that are filled outside of the live indexing path (e.g. a backfill) and moves an alias to them.
+ The alias is removed from its current indices and added to the new index in a single update aliases request, so
+ searches through the alias see either the old or the new indices, never both or none. A write alias is moved the same
+ way, the new index becomes its write index, so the live indexing writes into it with the next bulk request.
+ */
+@Component
+public class ElasticIndexAliasManager {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ElasticIndexAliasManager.class);
+
+    private final ElasticsearchClient elasticsearchClient;
+
+    public ElasticIndexAliasManager(ElasticsearchClient client) {
+        this.elasticsearchClient = client;
+    }
+
+    /*
+     The index is created without explicit mappings, the settings and mappings come from the index template. The
+     documents of a backfill are written with the NDJSON bulk path, which relies on the mapping of the template.
+     */
+    public void createIndex(String indexName) {
+        try {
+            if (elasticsearchClient.indices().exists(e -> e.index(indexName)).value()) {
+                LOG.info("Index {} exists, documents are added to it", indexName);
+                return;
+            }
+            elasticsearchClient.indices().create(c -> c.index(indexName));
+            LOG.info("Created index {}", indexName);
+        } catch (IOException e) {
+            throw new ElasticConfigException("Error while creating index " + indexName, e);
+        }
+    }
+
+    public List<String> getAliasIndices(String alias) {
+        try {
+            if (!elasticsearchClient.indices().existsAlias(a -> a.name(alias)).value()) {
+                return Collections.emptyList();
+            }
+            return new ArrayList<>(elasticsearchClient.indices().getAlias(a -> a.name(alias)).result().keySet());
+        } catch (IOException e) {
+            throw new ElasticConfigException("Error while reading the indices of alias " + alias, e);
+        }
+    }
+
+    public void switchAlias(String alias, String indexName) {
+        switchAlias(alias, indexName, false);
+    }
+
+    public void switchWriteAlias(String writeAlias, String indexName) {
+        switchAlias(writeAlias, indexName, true);
+    }
+
+    private void switchAlias(String alias, String indexName, boolean writeIndex) {
+        List<String> currentIndices = getAliasIndices(alias);
+        List<Action> actions = new ArrayList<>();
+        currentIndices.stream()
+                .filter(index -> !index.equals(indexName))
+                .forEach(index -> actions.add(Action.of(a -> a.remove(r -> r.index(index).alias(alias)))));
+        actions.add(Action.of(a -> a.add(ad -> {
+            ad.index(indexName).alias(alias);
+            if (writeIndex) {
+                ad.isWriteIndex(true);
+            }
+            return ad;
+        })));
+        try {
+            elasticsearchClient.indices().updateAliases(u -> u.actions(actions));
+            LOG.info("Alias {} switched from indices {} to index {}", alias, currentIndices, indexName);
+        } catch (IOException e) {
+            throw new ElasticConfigException("Error while switching alias " + alias + " to index " + indexName, e);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.microservices.demo.elastic.config.index;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.mapping.TypeMapping;
+import co.elastic.clients.elasticsearch.indices.IndexSettings;
+import com.microservices.demo.config.ElasticConfigData;
+import com.microservices.demo.elastic.config.exception.ElasticConfigException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+
+/*
+ Installs the composable index template of the twitter indices (elastic-config.index-template) on start up, so every
+ index matching the index patterns, the static index and the rolling indices, is created with an explicit mapping
+ instead of dynamic mapping:
+ - text is analyzed with the tweet_text analyzer without norms
+ - words holds the distinct words of the text as a keyword array with the tweet_word normalizer, it is not indexed
+   and only has doc values for the word counts of the query service
+ - userId is a long with doc values, createdAt a date with the format of TwitterIndexModel
+ - dynamic is false, so unknown fields are kept in the source but not indexed
+ The analysis settings and the mappings are read from the settings-file and mappings-file classpath resources, the
+ shard count, replica count and refresh interval come from the config.
+ ElasticsearchConfig installs the template before the elasticsearch operations are created, so it is in place when a
+ repository or the rolling index manager creates an index.
+ */
+@Component
+@ConditionalOnExpression("${elastic-config.index-template.enabled:false}")
+public class ElasticIndexTemplateManager {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ElasticIndexTemplateManager.class);
+
+    private final ElasticConfigData.IndexTemplate indexTemplate;
+
+    private final ElasticsearchClient elasticsearchClient;
+
+    public ElasticIndexTemplateManager(ElasticConfigData configData, ElasticsearchClient client) {
+        this.indexTemplate = configData.getIndexTemplate();
+        this.elasticsearchClient = client;
+    }
+
+    public void installTemplate() {
+        try {
+            IndexSettings settings = getSettings();
+            TypeMapping mappings = getMappings();
+            elasticsearchClient.indices().putIndexTemplate(t -> t
+                    .name(indexTemplate.getName())
+                    .indexPatterns(indexTemplate.getIndexPatterns())
+                    .priority(indexTemplate.getPriority())
+                    .template(template -> template
+                            .settings(settings)
+                            .mappings(mappings)));
+            LOG.info("Index template {} installed for index patterns {} with {} shards and {} replicas",
+                    indexTemplate.getName(), indexTemplate.getIndexPatterns(), indexTemplate.getNumberOfShards(),
+                    indexTemplate.getNumberOfReplicas());
+        } catch (IOException e) {
+            throw new ElasticConfigException("Error while installing index template " + indexTemplate.getName(), e);
+        }
+    }
+
+    private IndexSettings getSettings() throws IOException {
+        try (Reader reader = getResourceReader(indexTemplate.getSettingsFile())) {
+            return IndexSettings.of(s -> s
+                    .withJson(reader)
+                    .numberOfShards(String.valueOf(indexTemplate.getNumberOfShards()))
+                    .numberOfReplicas(String.valueOf(indexTemplate.getNumberOfReplicas()))
+                    .refreshInterval(r -> r.time(indexTemplate.getRefreshInterval())));
+        }
+    }
+
+    private TypeMapping getMappings() throws IOException {
+        try (Reader reader = getResourceReader(indexTemplate.getMappingsFile())) {
+            return TypeMapping.of(m -> m.withJson(reader));
+        }
+    }
+
+    private Reader getResourceReader(String path) throws IOException {
+        return new InputStreamReader(new ClassPathResource(path).getInputStream(), StandardCharsets.UTF_8);
+    }
+}
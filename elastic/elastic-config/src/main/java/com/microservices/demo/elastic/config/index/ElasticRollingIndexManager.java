@@ -0,0 +1,141 @@
+package com.microservices.demo.elastic.config.index;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.mapping.TypeMapping;
+import co.elastic.clients.elasticsearch.indices.RolloverResponse;
+import co.elastic.clients.elasticsearch.indices.get_alias.IndexAliases;
+import com.microservices.demo.config.ElasticConfigData;
+import com.microservices.demo.elastic.config.exception.ElasticConfigException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.data.elasticsearch.annotations.Document;
+import org.springframework.data.elasticsearch.core.convert.ElasticsearchConverter;
+import org.springframework.data.elasticsearch.core.index.MappingBuilder;
+import org.springframework.data.elasticsearch.core.mapping.ElasticsearchPersistentEntity;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+
+/*
+ Creates and rolls the time partitioned indices in the indexing service (elastic-config.rolling-index.manage-aliases).
+
+ (1) On start up, if the write alias does not exist, the first index is created with the write alias (as write index)
+     and the read alias. The mapping is built from the @Document entity that is indexed through the write alias.
+     ElasticsearchConfig runs this before the elasticsearch operations are created, so that the repositories find the
+     alias and do not create a static index with the same name.
+ (2) Every check-interval-ms the write alias is rolled over to a new index. It is rolled unconditionally when the
+     daily / hourly period of the current write index has ended, otherwise only if a primary shard of the write
+     index has grown above max-primary-shard-size-bytes. The new index is added to the read alias, and the old one
+     stays in the read alias until it is deleted for retention, which is a cheap index delete instead of a
+     delete-by-query.
+ */
+@Component
+@EnableScheduling
+@ConditionalOnExpression("${elastic-config.rolling-index.enabled:false} && " +
+        "${elastic-config.rolling-index.manage-aliases:false}")
+public class ElasticRollingIndexManager {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ElasticRollingIndexManager.class);
+
+    private final ElasticConfigData.RollingIndex rollingIndex;
+
+    private final ElasticsearchClient elasticsearchClient;
+
+    private final ElasticsearchConverter elasticsearchConverter;
+
+    private final RollingIndexResolver rollingIndexResolver;
+
+    public ElasticRollingIndexManager(ElasticConfigData configData,
+                                      ElasticsearchClient client,
+                                      ElasticsearchConverter converter,
+                                      RollingIndexResolver indexResolver) {
+        this.rollingIndex = configData.getRollingIndex();
+        this.elasticsearchClient = client;
+        this.elasticsearchConverter = converter;
+        this.rollingIndexResolver = indexResolver;
+    }
+
+    public void bootstrap() {
+        String writeAlias = rollingIndex.getWriteAlias();
+        try {
+            if (elasticsearchClient.indices().existsAlias(a -> a.name(writeAlias)).value()) {
+                LOG.info("Write alias {} exists, current write index is {}", writeAlias, getWriteIndex());
+                return;
+            }
+            String indexName = rollingIndexResolver.getIndexName(Instant.now());
+            elasticsearchClient.indices().create(c -> c
+                    .index(indexName)
+                    .mappings(getMappings())
+                    .aliases(writeAlias, a -> a.isWriteIndex(true))
+                    .aliases(rollingIndex.getReadAlias(), a -> a));
+            LOG.info("Created index {} with write alias {} and read alias {}", indexName, writeAlias,
+                    rollingIndex.getReadAlias());
+        } catch (IOException e) {
+            throw new ElasticConfigException("Error while creating the first index of alias " + writeAlias, e);
+        }
+    }
+
+    @Scheduled(initialDelayString = "${elastic-config.rolling-index.check-interval-ms}",
+            fixedDelayString = "${elastic-config.rolling-index.check-interval-ms}")
+    public void rollover() {
+        Instant now = Instant.now();
+        try {
+            String writeIndex = getWriteIndex();
+            boolean periodEnded = isPeriodEnded(writeIndex, now);
+            RolloverResponse response = elasticsearchClient.indices().rollover(r -> {
+                r.alias(rollingIndex.getWriteAlias())
+                        .newIndex(rollingIndexResolver.getIndexName(now))
+                        .mappings(getMappings())
+                        .aliases(rollingIndex.getReadAlias(), a -> a);
+                if (!periodEnded) {
+                    r.conditions(c -> c.maxPrimaryShardSizeBytes(rollingIndex.getMaxPrimaryShardSizeBytes()));
+                }
+                return r;
+            });
+            if (response.rolledOver()) {
+                LOG.info("Rolled over write alias {} from index {} to {}, period ended: {}",
+                        rollingIndex.getWriteAlias(), response.oldIndex(), response.newIndex(), periodEnded);
+            }
+        } catch (IOException | RuntimeException e) {
+            // The next check retries the rollover, documents keep going to the current write index meanwhile
+            LOG.error("Error while rolling over write alias {}", rollingIndex.getWriteAlias(), e);
+        }
+    }
+
+    private boolean isPeriodEnded(String writeIndex, Instant now) {
+        Instant indexStart = rollingIndexResolver.getIndexStart(writeIndex);
+        ChronoUnit periodUnit = rollingIndexResolver.getPeriodUnit();
+        return indexStart == null || indexStart.truncatedTo(periodUnit).isBefore(now.truncatedTo(periodUnit));
+    }
+
+    private String getWriteIndex() throws IOException {
+        Map<String, IndexAliases> aliasIndices = elasticsearchClient.indices()
+                .getAlias(a -> a.name(rollingIndex.getWriteAlias())).result();
+        return aliasIndices.entrySet().stream()
+                .filter(entry -> aliasIndices.size() == 1 || Boolean.TRUE.equals(
+                        entry.getValue().aliases().get(rollingIndex.getWriteAlias()).isWriteIndex()))
+                .map(Map.Entry::getKey)
+                .findFirst()
+                .orElseThrow(() -> new ElasticConfigException("No write index found for alias " +
+                        rollingIndex.getWriteAlias()));
+    }
+
+    private TypeMapping getMappings() {
+        ElasticsearchPersistentEntity<?> persistentEntity = elasticsearchConverter.getMappingContext()
+                .getPersistentEntities().stream()
+                .filter(entity -> entity.isAnnotationPresent(Document.class))
+                .filter(entity -> rollingIndex.getWriteAlias().equals(entity.getIndexCoordinates().getIndexName()))
+                .findFirst()
+                .orElseThrow(() -> new ElasticConfigException("No document is indexed through the write alias " +
+                        rollingIndex.getWriteAlias()));
+        String mapping = new MappingBuilder(elasticsearchConverter).buildPropertyMapping(persistentEntity.getType());
+        return TypeMapping.of(m -> m.withJson(new StringReader(mapping)));
+    }
+}
@@ -0,0 +1,116 @@
+package com.microservices.demo.elastic.config.index;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import com.microservices.demo.config.ElasticConfigData;
+import com.microservices.demo.elastic.config.exception.ElasticConfigException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/*
+ Names the rolling indices and finds the indices that have to be searched for a time range.
+
+ A rolling index is named <index-prefix>-<start time in UTC>, e.g. twitter-index-2024.01.31-00.00.00, and takes the
+ documents from its start time until the next index is created. Documents are placed by the time they are indexed,
+ which follows createdAt closely, so an index is searched if its start time is before the end of the range and the
+ next index starts after the beginning of the range.
+ Indices under the read alias that do not follow the naming (e.g. a static index added to the alias) are always searched.
+ */
+@Component
+public class RollingIndexResolver {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RollingIndexResolver.class);
+
+    private static final DateTimeFormatter INDEX_DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy.MM.dd-HH.mm.ss");
+
+    private static final String PERIOD_HOURLY = "hourly";
+
+    private final ElasticConfigData elasticConfigData;
+
+    private final ElasticsearchClient elasticsearchClient;
+
+    public RollingIndexResolver(ElasticConfigData configData, ElasticsearchClient client) {
+        this.elasticConfigData = configData;
+        this.elasticsearchClient = client;
+    }
+
+    public boolean isRollingIndexEnabled() {
+        ElasticConfigData.RollingIndex rollingIndex = elasticConfigData.getRollingIndex();
+        return rollingIndex != null && Boolean.TRUE.equals(rollingIndex.getEnabled());
+    }
+
+    public String getIndexName(Instant start) {
+        return elasticConfigData.getRollingIndex().getIndexPrefix() + "-" +
+                INDEX_DATE_FORMATTER.format(LocalDateTime.ofInstant(start, ZoneOffset.UTC));
+    }
+
+    // The start time of a rolling index, null if the index name does not follow the naming
+    public Instant getIndexStart(String indexName) {
+        String prefix = elasticConfigData.getRollingIndex().getIndexPrefix() + "-";
+        if (!indexName.startsWith(prefix)) {
+            return null;
+        }
+        try {
+            return LocalDateTime.parse(indexName.substring(prefix.length()), INDEX_DATE_FORMATTER)
+                    .toInstant(ZoneOffset.UTC);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    public ChronoUnit getPeriodUnit() {
+        return PERIOD_HOURLY.equals(elasticConfigData.getRollingIndex().getPeriod()) ?
+                ChronoUnit.HOURS : ChronoUnit.DAYS;
+    }
+
+    // The indices to search for documents created between from and to, the index-name if rolling index is disabled
+    public List<String> getIndexNames(ZonedDateTime from, ZonedDateTime to) {
+        if (!isRollingIndexEnabled()) {
+            return Collections.singletonList(elasticConfigData.getIndexName());
+        }
+        String readAlias = elasticConfigData.getRollingIndex().getReadAlias();
+        TreeMap<Instant, String> rollingIndices = new TreeMap<>();
+        List<String> indexNames = new ArrayList<>();
+        for (String indexName : getAliasIndices(readAlias)) {
+            Instant indexStart = getIndexStart(indexName);
+            if (indexStart == null) {
+                indexNames.add(indexName);
+            } else {
+                rollingIndices.put(indexStart, indexName);
+            }
+        }
+        for (Map.Entry<Instant, String> rollingIndex : rollingIndices.entrySet()) {
+            Instant nextIndexStart = rollingIndices.higherKey(rollingIndex.getKey());
+            boolean startsBeforeRangeEnd = to == null || !rollingIndex.getKey().isAfter(to.toInstant());
+            boolean endsAfterRangeStart = from == null || nextIndexStart == null ||
+                    nextIndexStart.isAfter(from.toInstant());
+            if (startsBeforeRangeEnd && endsAfterRangeStart) {
+                indexNames.add(rollingIndex.getValue());
+            }
+        }
+        LOG.debug("Indices {} of alias {} overlap the range {} - {}", indexNames, readAlias, from, to);
+        return indexNames;
+    }
+
+    private List<String> getAliasIndices(String alias) {
+        try {
+            return new ArrayList<>(elasticsearchClient.indices().getAlias(a -> a.name(alias)).result().keySet());
+        } catch (IOException e) {
+            throw new ElasticConfigException("Error while reading the indices of alias " + alias, e);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.microservices.demo.elastic.index.client.config;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.elasticsearch.client.elc.ReactiveElasticsearchClient;
+import org.springframework.data.elasticsearch.client.elc.ReactiveElasticsearchTemplate;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.ReactiveElasticsearchOperations;
+
+/*
+ The reactive client shares the transport (rest client, connection pool and json mapper) of the blocking client created
+ by ElasticsearchConfig, and the template uses the same converter, so the index template, the @Version and the
+ @Routing of the documents apply in the same way.
+ */
+@Configuration
+@ConditionalOnExpression("'${elastic-config.reactive-index-client.enabled:false}' == 'true'")
+public class ReactiveElasticIndexClientConfig {
+
+    @Bean
+    public ReactiveElasticsearchClient reactiveElasticsearchClient(ElasticsearchClient elasticsearchClient) {
+        return new ReactiveElasticsearchClient(elasticsearchClient._transport(),
+                elasticsearchClient._transportOptions());
+    }
+
+    @Bean(name = {"reactiveElasticsearchOperations", "reactiveElasticsearchTemplate"})
+    public ReactiveElasticsearchOperations reactiveElasticsearchOperations(
+            ReactiveElasticsearchClient reactiveElasticsearchClient,
+            ElasticsearchOperations elasticsearchOperations) {
+        return new ReactiveElasticsearchTemplate(reactiveElasticsearchClient,
+                elasticsearchOperations.getElasticsearchConverter());
+    }
+}
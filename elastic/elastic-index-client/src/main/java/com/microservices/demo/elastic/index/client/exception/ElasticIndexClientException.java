@@ -0,0 +1,16 @@
+package com.microservices.demo.elastic.index.client.exception;
+
+public class ElasticIndexClientException extends RuntimeException {
+
+    public ElasticIndexClientException() {
+        super();
+    }
+
+    public ElasticIndexClientException(String message) {
+        super(message);
+    }
+
+    public ElasticIndexClientException(String message, Throwable t) {
+        super(message, t);
+    }
+}
@@ -3,7 +3,20 @@ package com.microservices.demo.elastic.index.client.service;
 import com.microservices.demo.elastic.model.index.IndexModel;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public interface ElasticIndexClient<T extends IndexModel> {
     List<String> save(List<T> documents);
+
+    /*
+     Indexes the documents without blocking the caller, the future completes with the document ids after elasticsearch
+     acknowledged all documents. The blocking implementations index the documents before returning.
+     */
+    default CompletableFuture<List<String>> saveAsync(List<T> documents) {
+        try {
+            return CompletableFuture.completedFuture(save(documents));
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
 }
@@ -0,0 +1,158 @@
+package com.microservices.demo.elastic.index.client.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.microservices.demo.elastic.index.client.exception.ElasticIndexClientException;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.elasticsearch.client.Request;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.ResponseException;
+import org.elasticsearch.client.RestClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.elasticsearch.UncategorizedElasticsearchException;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ Sends an already encoded bulk NDJSON body to the _bulk endpoint with the low level rest client, so the documents are
+ not mapped and serialized again by spring data elasticsearch. The response is read with a streaming parser, only the
+ id, status and error of each item are kept.
+ A version conflict is counted as a skipped duplicate, the other failed items are returned with their error type and
+ reason, so the caller can decide which ones to send again. A request that is rejected as a whole is thrown as an
+ UncategorizedElasticsearchException with the status, like spring data does, so ElasticBulkIndexUtil splits a 413 and
+ retries a 429 of this client too.
+ */
+@Service
+public class ElasticNdjsonBulkClient {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ElasticNdjsonBulkClient.class);
+
+    private static final ContentType NDJSON = ContentType.create("application/x-ndjson");
+
+    private static final String VERSION_CONFLICT = "version_conflict_engine_exception";
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final RestClient restClient;
+
+    private final MeterRegistry meterRegistry;
+
+    public ElasticNdjsonBulkClient(RestClient client, MeterRegistry registry) {
+        this.restClient = client;
+        this.meterRegistry = registry;
+    }
+
+    public BulkResult bulk(byte[] body, int length) {
+        Request request = new Request("POST", "/_bulk");
+        request.setEntity(new ByteArrayEntity(body, 0, length, NDJSON));
+        try {
+            Response response = restClient.performRequest(request);
+            try (InputStream content = response.getEntity().getContent()) {
+                return readBulkResult(content);
+            }
+        } catch (ResponseException e) {
+            throw new UncategorizedElasticsearchException("Bulk request of " + length + " bytes failed",
+                    e.getResponse().getStatusLine().getStatusCode(), null, e);
+        } catch (IOException e) {
+            throw new ElasticIndexClientException("Bulk request of " + length + " bytes failed", e);
+        }
+    }
+
+    private BulkResult readBulkResult(InputStream content) throws IOException {
+        BulkResult bulkResult = new BulkResult();
+        try (JsonParser parser = JSON_FACTORY.createParser(content)) {
+            while (parser.nextToken() != null) {
+                if (parser.currentToken() == JsonToken.FIELD_NAME && "items".equals(parser.getCurrentName())) {
+                    parser.nextToken();
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        readItem(parser, bulkResult);
+                    }
+                } else if (parser.currentToken() == JsonToken.FIELD_NAME) {
+                    parser.nextToken();
+                    parser.skipChildren();
+                }
+            }
+        }
+        if (bulkResult.duplicates > 0) {
+            meterRegistry.counter("elastic.index.duplicates.skipped").increment(bulkResult.duplicates);
+        }
+        LOG.debug("Bulk response with {} indexed, {} duplicate and {} failed documents",
+                bulkResult.documentIds.size(), bulkResult.duplicates, bulkResult.failedDocuments.size());
+        return bulkResult;
+    }
+
+    // An item is {"index": {"_id": ..., "status": ..., "error": {"type": ..., "reason": ...}}}
+    private void readItem(JsonParser parser, BulkResult bulkResult) throws IOException {
+        String id = null;
+        String error = null;
+        parser.nextToken();
+        parser.nextToken();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = parser.getCurrentName();
+            parser.nextToken();
+            if ("_id".equals(fieldName)) {
+                id = parser.getText();
+            } else if ("error".equals(fieldName)) {
+                error = readError(parser);
+            } else {
+                parser.skipChildren();
+            }
+        }
+        parser.nextToken();
+        if (error == null) {
+            bulkResult.documentIds.add(id);
+        } else if (error.startsWith(VERSION_CONFLICT)) {
+            bulkResult.documentIds.add(id);
+            bulkResult.duplicates++;
+        } else {
+            bulkResult.failedDocuments.put(id, error);
+        }
+    }
+
+    // Returns "<type>: <reason>" of the error
+    private String readError(JsonParser parser) throws IOException {
+        String errorType = "other";
+        String reason = "";
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = parser.getCurrentName();
+            parser.nextToken();
+            if ("type".equals(fieldName)) {
+                errorType = parser.getText();
+            } else if ("reason".equals(fieldName)) {
+                reason = parser.getText();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return errorType + ": " + reason;
+    }
+
+    public static class BulkResult {
+        private final List<String> documentIds = new ArrayList<>();
+        private final Map<String, String> failedDocuments = new LinkedHashMap<>();
+        private int duplicates;
+
+        public List<String> getDocumentIds() {
+            return documentIds;
+        }
+
+        // The error type and reason of each failed document, keyed by the document id
+        public Map<String, String> getFailedDocuments() {
+            return failedDocuments;
+        }
+
+        public int getDuplicates() {
+            return duplicates;
+        }
+    }
+}
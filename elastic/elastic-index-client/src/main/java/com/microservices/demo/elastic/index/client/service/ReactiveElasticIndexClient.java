@@ -0,0 +1,12 @@
+package com.microservices.demo.elastic.index.client.service;
+
+import com.microservices.demo.elastic.model.index.IndexModel;
+import reactor.core.publisher.Flux;
+
+public interface ReactiveElasticIndexClient<T extends IndexModel> {
+    /*
+     Indexes the documents of the flux in bulk requests, the returned flux emits the ids of the indexed documents.
+     Documents are requested from the source only when a bulk request can be sent.
+     */
+    Flux<String> save(Flux<T> documents);
+}
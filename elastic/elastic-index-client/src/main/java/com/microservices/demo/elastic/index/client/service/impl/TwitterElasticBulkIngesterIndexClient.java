@@ -0,0 +1,278 @@
+package com.microservices.demo.elastic.index.client.service.impl;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._helpers.bulk.BulkIngester;
+import co.elastic.clients.elasticsearch._helpers.bulk.BulkListener;
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
+import co.elastic.clients.elasticsearch._types.VersionType;
+import co.elastic.clients.elasticsearch.core.BulkRequest;
+import co.elastic.clients.elasticsearch.core.BulkResponse;
+import co.elastic.clients.elasticsearch.core.bulk.BulkOperation;
+import co.elastic.clients.elasticsearch.core.bulk.BulkResponseItem;
+import com.microservices.demo.config.ElasticConfigData;
+import com.microservices.demo.elastic.index.client.exception.ElasticIndexClientException;
+import com.microservices.demo.elastic.index.client.service.ElasticIndexClient;
+import com.microservices.demo.elastic.index.client.util.BulkErrorType;
+import com.microservices.demo.elastic.index.client.util.ElasticIndexUtil;
+import com.microservices.demo.elastic.model.index.impl.TwitterIndexModel;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.convert.ElasticsearchConverter;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ Indexes documents through the BulkIngester of the elasticsearch java client instead of one bulk request per call.
+ The ingester buffers the operations of all callers and sends a bulk request when max-operations or max-size-bytes is
+ reached or flush-interval-ms has passed, with up to max-concurrent-requests bulk requests in flight. When all requests
+ are in flight, adding a document blocks the caller, which gives back pressure to the kafka consumer.
+ saveAsync returns right after the documents are buffered, the future completes once every document of the batch is
+ acknowledged by elasticsearch. The batches of concurrent consumers are indexed together in the shared bulk requests.
+
+ (1) Documents with an external version that is already indexed are skipped by elasticsearch with a version conflict,
+     they are treated as indexed.
+ (2) Items rejected with 429 es_rejected_execution or by a circuit breaker are added to the ingester again after the
+     exponential backoff of elastic-config.bulk-retry, up to max-retries times. Only the rejected items are sent again,
+     the batch completes once they are indexed. A whole bulk request that fails with an I/O error, 429 or 503 is
+     retried the same way.
+ (3) The future of the batch fails only when an item can not be indexed after the retries or fails with any other
+     error, e.g. a mapping error.
+ The max-batch-size and max-batch-bytes settings of bulk-retry do not apply here, the bulk requests are sized by
+ max-operations and max-size-bytes of bulk-ingester.
+ */
+@Service
+@ConditionalOnExpression("'${elastic-config.bulk-ingester.enabled:false}' == 'true' && " +
+        "'${elastic-config.reactive-index-client.enabled:false}' == 'false'")
+public class TwitterElasticBulkIngesterIndexClient implements ElasticIndexClient<TwitterIndexModel> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TwitterElasticBulkIngesterIndexClient.class);
+
+    private static final int STATUS_SERVICE_UNAVAILABLE = 503;
+
+    private final ElasticConfigData elasticConfigData;
+
+    private final ElasticConfigData.BulkRetry bulkRetry;
+
+    private final ElasticsearchConverter elasticsearchConverter;
+
+    private final MeterRegistry meterRegistry;
+
+    private final ElasticIndexUtil<TwitterIndexModel> elasticIndexUtil;
+
+    private final BulkIngester<IndexOperation> bulkIngester;
+
+    private final ScheduledExecutorService retryExecutorService;
+
+    public TwitterElasticBulkIngesterIndexClient(ElasticConfigData configData,
+                                                 ElasticsearchClient elasticsearchClient,
+                                                 ElasticsearchOperations elasticOperations,
+                                                 MeterRegistry registry,
+                                                 ElasticIndexUtil<TwitterIndexModel> indexUtil) {
+        this.elasticConfigData = configData;
+        this.bulkRetry = configData.getBulkRetry();
+        this.elasticsearchConverter = elasticOperations.getElasticsearchConverter();
+        this.meterRegistry = registry;
+        this.elasticIndexUtil = indexUtil;
+        this.retryExecutorService = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "elastic-bulk-ingester-retry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ElasticConfigData.BulkIngester bulkIngesterConfig = configData.getBulkIngester();
+        this.bulkIngester = BulkIngester.of(builder -> builder
+                .client(elasticsearchClient)
+                .maxOperations(bulkIngesterConfig.getMaxOperations())
+                .maxSize(bulkIngesterConfig.getMaxSizeBytes())
+                .maxConcurrentRequests(bulkIngesterConfig.getMaxConcurrentRequests())
+                .flushInterval(bulkIngesterConfig.getFlushIntervalMs(), TimeUnit.MILLISECONDS)
+                .listener(new IndexBatchListener()));
+    }
+
+    @Override
+    public List<String> save(List<TwitterIndexModel> documents) {
+        try {
+            return saveAsync(documents).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+    }
+
+    @Override
+    public CompletableFuture<List<String>> saveAsync(List<TwitterIndexModel> documents) {
+        IndexBatch indexBatch = new IndexBatch(documents.size());
+        if (documents.isEmpty()) {
+            indexBatch.future.complete(Collections.emptyList());
+            return indexBatch.future;
+        }
+        documents.forEach(document -> {
+            BulkOperation bulkOperation = BulkOperation.of(operation -> operation
+                    .index(index -> index
+                            .index(elasticConfigData.getIndexName())
+                            .id(document.getId())
+                            .routing(elasticIndexUtil.getRouting(document))
+                            .version(document.getVersion())
+                            .versionType(document.getVersion() == null ? null : VersionType.External)
+                            .document(elasticsearchConverter.mapObject(document))));
+            bulkIngester.add(bulkOperation, new IndexOperation(indexBatch, bulkOperation, 0));
+        });
+        return indexBatch.future;
+    }
+
+    @PreDestroy
+    public void close() {
+        retryExecutorService.shutdown();
+        try {
+            // Delayed retries still run after shutdown, they are added before the ingester is flushed
+            retryExecutorService.awaitTermination(bulkRetry.getMaxBackoffMs() * 2, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        LOG.info("Closing bulk ingester, flushing {} pending operations", bulkIngester.pendingOperations());
+        bulkIngester.close();
+    }
+
+    private void retry(IndexOperation indexOperation, BulkErrorType errorType) {
+        long backoffMs = getBackoffMs(indexOperation.attempt);
+        meterRegistry.counter("elastic.index.bulk.retries").increment();
+        LOG.debug("Retrying document in {} ms after {}, attempt {} of {}", backoffMs, errorType.getName(),
+                indexOperation.attempt + 1, bulkRetry.getMaxRetries());
+        IndexOperation retryOperation = new IndexOperation(indexOperation.indexBatch, indexOperation.bulkOperation,
+                indexOperation.attempt + 1);
+        retryExecutorService.schedule(() -> {
+            try {
+                bulkIngester.add(retryOperation.bulkOperation, retryOperation);
+            } catch (RuntimeException e) {
+                retryOperation.indexBatch.fail(e);
+            }
+        }, backoffMs, TimeUnit.MILLISECONDS);
+    }
+
+    private long getBackoffMs(int attempt) {
+        double backoffMs = bulkRetry.getInitialBackoffMs() * Math.pow(bulkRetry.getBackoffMultiplier(), attempt);
+        return (long) Math.min(backoffMs, bulkRetry.getMaxBackoffMs());
+    }
+
+    private boolean canRetry(IndexOperation indexOperation) {
+        return indexOperation.attempt < bulkRetry.getMaxRetries() && !retryExecutorService.isShutdown();
+    }
+
+    private boolean isRetryable(Throwable failure) {
+        if (failure instanceof ElasticsearchException elasticsearchException) {
+            int status = elasticsearchException.status();
+            return status == BulkErrorType.STATUS_TOO_MANY_REQUESTS || status == STATUS_SERVICE_UNAVAILABLE;
+        }
+        return failure instanceof IOException;
+    }
+
+    private void countFailure(BulkErrorType errorType) {
+        meterRegistry.counter("elastic.index.bulk.failures", "type", errorType.getName()).increment();
+    }
+
+    private class IndexBatchListener implements BulkListener<IndexOperation> {
+
+        @Override
+        public void beforeBulk(long executionId, BulkRequest request, List<IndexOperation> contexts) {
+            LOG.debug("Sending bulk request {} with {} operations", executionId, request.operations().size());
+        }
+
+        @Override
+        public void afterBulk(long executionId, BulkRequest request, List<IndexOperation> contexts,
+                              BulkResponse response) {
+            List<BulkResponseItem> items = response.items();
+            int retried = 0;
+            for (int i = 0; i < items.size(); i++) {
+                BulkResponseItem item = items.get(i);
+                IndexOperation indexOperation = contexts.get(i);
+                if (item.error() == null) {
+                    indexOperation.indexBatch.acknowledge(item.id());
+                    continue;
+                }
+                BulkErrorType errorType = item.status() == BulkErrorType.STATUS_TOO_MANY_REQUESTS ?
+                        BulkErrorType.REJECTED_EXECUTION : BulkErrorType.fromType(item.error().type());
+                if (errorType == BulkErrorType.VERSION_CONFLICT) {
+                    meterRegistry.counter("elastic.index.duplicates.skipped").increment();
+                    indexOperation.indexBatch.acknowledge(item.id());
+                    continue;
+                }
+                countFailure(errorType);
+                if (errorType.isRetryable() && canRetry(indexOperation)) {
+                    retry(indexOperation, errorType);
+                    retried++;
+                } else {
+                    indexOperation.indexBatch.fail(new ElasticIndexClientException("Document with id " + item.id() +
+                            " could not be indexed: " + errorType.getName() + ": " + item.error().reason()));
+                }
+            }
+            LOG.info("Bulk request {} indexed {} documents in {} ms, errors: {}, retried: {}", executionId,
+                    items.size(), response.took(), response.errors(), retried);
+        }
+
+        @Override
+        public void afterBulk(long executionId, BulkRequest request, List<IndexOperation> contexts,
+                              Throwable failure) {
+            boolean retryable = isRetryable(failure);
+            LOG.error("Bulk request {} with {} operations failed, retryable: {}", executionId,
+                    request.operations().size(), retryable, failure);
+            for (IndexOperation indexOperation : contexts) {
+                countFailure(BulkErrorType.OTHER);
+                if (retryable && canRetry(indexOperation)) {
+                    retry(indexOperation, BulkErrorType.OTHER);
+                } else {
+                    indexOperation.indexBatch.fail(failure);
+                }
+            }
+        }
+    }
+
+    // One document of a batch with the number of times it was sent again
+    private static class IndexOperation {
+        private final IndexBatch indexBatch;
+        private final BulkOperation bulkOperation;
+        private final int attempt;
+
+        private IndexOperation(IndexBatch indexBatch, BulkOperation bulkOperation, int attempt) {
+            this.indexBatch = indexBatch;
+            this.bulkOperation = bulkOperation;
+            this.attempt = attempt;
+        }
+    }
+
+    // The documents of one saveAsync call, completes the future when all of them are acknowledged
+    private static class IndexBatch {
+        private final CompletableFuture<List<String>> future = new CompletableFuture<>();
+        private final List<String> documentIds;
+        private final AtomicInteger remaining;
+
+        private IndexBatch(int size) {
+            this.documentIds = new ArrayList<>(size);
+            this.remaining = new AtomicInteger(size);
+        }
+
+        private void acknowledge(String documentId) {
+            synchronized (documentIds) {
+                documentIds.add(documentId);
+            }
+            if (remaining.decrementAndGet() == 0) {
+                future.complete(documentIds);
+            }
+        }
+
+        private void fail(Throwable failure) {
+            future.completeExceptionally(failure);
+        }
+    }
+}
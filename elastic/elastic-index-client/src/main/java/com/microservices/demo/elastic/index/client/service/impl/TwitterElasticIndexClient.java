@@ -2,6 +2,7 @@ package com.microservices.demo.elastic.index.client.service.impl;
 
 import com.microservices.demo.config.ElasticConfigData;
 import com.microservices.demo.elastic.index.client.service.ElasticIndexClient;
+import com.microservices.demo.elastic.index.client.util.ElasticBulkIndexUtil;
 import com.microservices.demo.elastic.index.client.util.ElasticIndexUtil;
 import com.microservices.demo.elastic.model.index.impl.TwitterIndexModel;
 import org.slf4j.Logger;
@@ -19,7 +20,9 @@ import java.util.stream.Collectors;
 
 @Service
 // @ConditionalOnProperty(name = "elastic-config.is-repository", havingValue = "false")
-@ConditionalOnExpression("'${elastic-config.is-repository:false}' == 'false'")
+@ConditionalOnExpression("'${elastic-config.is-repository:false}' == 'false' && " +
+        "'${elastic-config.bulk-ingester.enabled:false}' == 'false' && " +
+        "'${elastic-config.reactive-index-client.enabled:false}' == 'false'")
 public class TwitterElasticIndexClient implements ElasticIndexClient<TwitterIndexModel> {
 
     private static final Logger LOG = LoggerFactory.getLogger(TwitterElasticIndexClient.class);
@@ -30,21 +33,28 @@ public class TwitterElasticIndexClient implements ElasticIndexClient<TwitterInde
 
     private final ElasticIndexUtil<TwitterIndexModel> elasticIndexUtil;
 
+    private final ElasticBulkIndexUtil<TwitterIndexModel> elasticBulkIndexUtil;
+
     public TwitterElasticIndexClient(ElasticConfigData configData,
                                      ElasticsearchOperations elasticOperations,
-                                     ElasticIndexUtil<TwitterIndexModel> indexUtil) {
+                                     ElasticIndexUtil<TwitterIndexModel> indexUtil,
+                                     ElasticBulkIndexUtil<TwitterIndexModel> bulkIndexUtil) {
         this.elasticConfigData = configData;
         this.elasticsearchOperations = elasticOperations;
         this.elasticIndexUtil = indexUtil;
+        this.elasticBulkIndexUtil = bulkIndexUtil;
     }
 
     @Override
     public List<String> save(List<TwitterIndexModel> documents) {
-        List<IndexQuery> indexQueries = elasticIndexUtil.getIndexQueries(documents);
-        List<String> documentIds = elasticsearchOperations.bulkIndex(
-                indexQueries,
-                IndexCoordinates.of(elasticConfigData.getIndexName())
-        ).stream().map(IndexedObjectInformation::id).collect(Collectors.toList());
+        // Failed items of the bulk response are retried or reported by the bulk index util, not ignored
+        List<String> documentIds = elasticBulkIndexUtil.bulkIndex(documents, batch -> {
+            List<IndexQuery> indexQueries = elasticIndexUtil.getIndexQueries(batch);
+            return elasticsearchOperations.bulkIndex(
+                    indexQueries,
+                    IndexCoordinates.of(elasticConfigData.getIndexName())
+            ).stream().map(IndexedObjectInformation::id).collect(Collectors.toList());
+        });
         LOG.info("Documents indexed successfully with type: {} and ids: {}", TwitterIndexModel.class.getName(),
                 documentIds);
         return documentIds;
@@ -2,6 +2,7 @@ package com.microservices.demo.elastic.index.client.service.impl;
 
 import com.microservices.demo.elastic.index.client.repository.TwitterElasticsearchIndexRepository;
 import com.microservices.demo.elastic.index.client.service.ElasticIndexClient;
+import com.microservices.demo.elastic.index.client.util.ElasticBulkIndexUtil;
 import com.microservices.demo.elastic.model.index.impl.TwitterIndexModel;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -14,22 +15,31 @@ import java.util.stream.Collectors;
 
 @Service
 //@ConditionalOnProperty(name = "elastic-config.is-repository", havingValue = "true", matchIfMissing = true)
-@ConditionalOnExpression("'${elastic-config.is-repository:true}' == 'true'")
+@ConditionalOnExpression("'${elastic-config.is-repository:true}' == 'true' && " +
+        "'${elastic-config.bulk-ingester.enabled:false}' == 'false' && " +
+        "'${elastic-config.reactive-index-client.enabled:false}' == 'false'")
 public class TwitterElasticRepositoryIndexClient implements ElasticIndexClient<TwitterIndexModel> {
 
     private static final Logger LOG = LoggerFactory.getLogger(TwitterElasticRepositoryIndexClient.class);
 
     private final TwitterElasticsearchIndexRepository twitterElasticsearchIndexRepository;
 
-    public TwitterElasticRepositoryIndexClient(TwitterElasticsearchIndexRepository indexRepository) {
+    private final ElasticBulkIndexUtil<TwitterIndexModel> elasticBulkIndexUtil;
+
+    public TwitterElasticRepositoryIndexClient(TwitterElasticsearchIndexRepository indexRepository,
+                                               ElasticBulkIndexUtil<TwitterIndexModel> bulkIndexUtil) {
         this.twitterElasticsearchIndexRepository = indexRepository;
+        this.elasticBulkIndexUtil = bulkIndexUtil;
     }
 
     @Override
     public List<String> save(List<TwitterIndexModel> documents) {
-        List<TwitterIndexModel> repositoryResponse =
-                (List<TwitterIndexModel>) twitterElasticsearchIndexRepository.saveAll(documents);
-        List<String> ids = repositoryResponse.stream().map(TwitterIndexModel::getId).collect(Collectors.toList());
+        // saveAll runs a bulk request, the failed items are retried or reported by the bulk index util
+        List<String> ids = elasticBulkIndexUtil.bulkIndex(documents, batch -> {
+            List<TwitterIndexModel> repositoryResponse =
+                    (List<TwitterIndexModel>) twitterElasticsearchIndexRepository.saveAll(batch);
+            return repositoryResponse.stream().map(TwitterIndexModel::getId).collect(Collectors.toList());
+        });
         LOG.info("Documents indexed successfully with type: {} and ids: {}", TwitterIndexModel.class.getName(), ids);
         return ids;
     }
@@ -0,0 +1,136 @@
+package com.microservices.demo.elastic.index.client.service.impl;
+
+import com.microservices.demo.config.ElasticConfigData;
+import com.microservices.demo.elastic.index.client.exception.ElasticIndexClientException;
+import com.microservices.demo.elastic.index.client.service.ElasticIndexClient;
+import com.microservices.demo.elastic.index.client.service.ReactiveElasticIndexClient;
+import com.microservices.demo.elastic.index.client.util.BulkErrorType;
+import com.microservices.demo.elastic.model.index.impl.TwitterIndexModel;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.data.elasticsearch.BulkFailureException;
+import org.springframework.data.elasticsearch.UncategorizedElasticsearchException;
+import org.springframework.data.elasticsearch.core.ReactiveElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+/*
+ Indexes a flux of documents with the reactive elasticsearch template (elastic-config.reactive-index-client.enabled).
+
+ (1) The documents are collected into bulk requests of max-batch-size documents, a smaller request is sent when
+     flush-interval-ms passed since its first document.
+ (2) At most max-concurrent-requests bulk requests are in flight. The batches are buffered with fair back pressure, so
+     documents are only requested from the source flux when a bulk request can be sent, a slow cluster slows down the
+     source instead of filling the memory.
+ (3) A bulk request rejected with 429, or with items rejected because of a full write queue or a circuit breaker, is
+     sent again with the backoff of elastic-config.bulk-retry. The whole batch is sent again, the items that were
+     indexed by the first request come back as version conflicts of their external version and are treated as
+     indexed duplicates, as in the blocking clients. Any other failure fails the returned flux.
+
+ It also implements ElasticIndexClient, saveAsync does not block the calling thread.
+ */
+@Service
+@ConditionalOnExpression("'${elastic-config.reactive-index-client.enabled:false}' == 'true'")
+public class TwitterReactiveElasticIndexClient implements ReactiveElasticIndexClient<TwitterIndexModel>,
+        ElasticIndexClient<TwitterIndexModel> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TwitterReactiveElasticIndexClient.class);
+
+    private final ElasticConfigData elasticConfigData;
+
+    private final ReactiveElasticsearchOperations reactiveElasticsearchOperations;
+
+    private final MeterRegistry meterRegistry;
+
+    public TwitterReactiveElasticIndexClient(ElasticConfigData configData,
+                                             ReactiveElasticsearchOperations reactiveOperations,
+                                             MeterRegistry registry) {
+        this.elasticConfigData = configData;
+        this.reactiveElasticsearchOperations = reactiveOperations;
+        this.meterRegistry = registry;
+    }
+
+    @Override
+    public Flux<String> save(Flux<TwitterIndexModel> documents) {
+        ElasticConfigData.ReactiveIndexClient reactiveIndexClient = elasticConfigData.getReactiveIndexClient();
+        return documents
+                .bufferTimeout(reactiveIndexClient.getMaxBatchSize(),
+                        Duration.ofMillis(reactiveIndexClient.getFlushIntervalMs()), true)
+                .flatMap(this::indexBatch, reactiveIndexClient.getMaxConcurrentRequests(), 1)
+                .flatMapIterable(documentIds -> documentIds);
+    }
+
+    @Override
+    public List<String> save(List<TwitterIndexModel> documents) {
+        return save(Flux.fromIterable(documents)).collectList().block();
+    }
+
+    @Override
+    public CompletableFuture<List<String>> saveAsync(List<TwitterIndexModel> documents) {
+        return save(Flux.fromIterable(documents)).collectList().toFuture();
+    }
+
+    private Mono<List<String>> indexBatch(List<TwitterIndexModel> batch) {
+        ElasticConfigData.BulkRetry bulkRetry = elasticConfigData.getBulkRetry();
+        IndexCoordinates indexCoordinates = IndexCoordinates.of(elasticConfigData.getIndexName());
+        return Mono.defer(() -> reactiveElasticsearchOperations.saveAll(Mono.just(batch), indexCoordinates)
+                        .map(TwitterIndexModel::getId)
+                        .collectList())
+                .onErrorResume(BulkFailureException.class, e -> getIndexedDocumentIds(batch, e))
+                .retryWhen(Retry.backoff(bulkRetry.getMaxRetries(), Duration.ofMillis(bulkRetry.getInitialBackoffMs()))
+                        .maxBackoff(Duration.ofMillis(bulkRetry.getMaxBackoffMs()))
+                        .filter(this::isRetryable)
+                        .doBeforeRetry(retrySignal -> {
+                            LOG.warn("Retrying bulk request of {} documents, attempt {} of {}", batch.size(),
+                                    retrySignal.totalRetries() + 1, bulkRetry.getMaxRetries());
+                            meterRegistry.counter("elastic.index.bulk.retries").increment(batch.size());
+                        })
+                        .onRetryExhaustedThrow((retrySpec, retrySignal) -> retrySignal.failure()))
+                .onErrorMap(e -> !(e instanceof ElasticIndexClientException), e ->
+                        new ElasticIndexClientException("Bulk request of " + batch.size() +
+                                " documents could not be indexed", e))
+                .doOnNext(documentIds -> LOG.debug("Documents indexed successfully with type: {} and ids: {}",
+                        TwitterIndexModel.class.getName(), documentIds));
+    }
+
+    // Version conflicts are redelivered duplicates, the batch is indexed if no other item failed
+    private Mono<List<String>> getIndexedDocumentIds(List<TwitterIndexModel> batch, BulkFailureException e) {
+        Map<BulkErrorType, Long> errorTypes = e.getFailedDocuments().values().stream()
+                .collect(Collectors.groupingBy(BulkErrorType::fromReason, Collectors.counting()));
+        errorTypes.forEach((errorType, count) -> {
+            if (errorType == BulkErrorType.VERSION_CONFLICT) {
+                meterRegistry.counter("elastic.index.duplicates.skipped").increment(count);
+            } else {
+                meterRegistry.counter("elastic.index.bulk.failures", "type", errorType.getName()).increment(count);
+            }
+        });
+        if (errorTypes.keySet().stream().allMatch(errorType -> errorType == BulkErrorType.VERSION_CONFLICT)) {
+            return Mono.just(batch.stream().map(TwitterIndexModel::getId).collect(Collectors.toList()));
+        }
+        LOG.error("{} of {} documents could not be indexed: {}", e.getFailedDocuments().size(), batch.size(),
+                e.getFailedDocuments());
+        return Mono.error(e);
+    }
+
+    private boolean isRetryable(Throwable e) {
+        if (e instanceof BulkFailureException bulkFailureException) {
+            return bulkFailureException.getFailedDocuments().values().stream()
+                    .map(BulkErrorType::fromReason)
+                    .allMatch(errorType -> errorType.isRetryable() || errorType == BulkErrorType.VERSION_CONFLICT);
+        }
+        return e instanceof UncategorizedElasticsearchException elasticsearchException &&
+                elasticsearchException.getStatusCode() != null &&
+                elasticsearchException.getStatusCode() == BulkErrorType.STATUS_TOO_MANY_REQUESTS;
+    }
+}
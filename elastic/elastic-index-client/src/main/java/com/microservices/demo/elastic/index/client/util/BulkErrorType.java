@@ -0,0 +1,67 @@
+package com.microservices.demo.elastic.index.client.util;
+
+// Error type of a failed bulk item or request, derived from the reason or the status returned by spring data
+public enum BulkErrorType {
+    REJECTED_EXECUTION("es_rejected_execution_exception", true),
+    CIRCUIT_BREAKING("circuit_breaking_exception", true),
+    VERSION_CONFLICT("version_conflict_engine_exception", false),
+    MAPPER_PARSING("mapper_parsing_exception", false),
+    REQUEST_TOO_LARGE("request_too_large", false),
+    OTHER("other", false);
+
+    public static final int STATUS_REQUEST_TOO_LARGE = 413;
+
+    public static final int STATUS_TOO_MANY_REQUESTS = 429;
+
+    private final String name;
+    private final boolean retryable;
+
+    BulkErrorType(String name, boolean retryable) {
+        this.name = name;
+        this.retryable = retryable;
+    }
+
+    // The reason may start with the error type, as the failed items of the NDJSON bulk client do
+    public static BulkErrorType fromReason(String reason) {
+        String lowerCaseReason = reason == null ? "" : reason.toLowerCase();
+        if (lowerCaseReason.contains("rejected execution") || lowerCaseReason.contains(REJECTED_EXECUTION.name)) {
+            return REJECTED_EXECUTION;
+        } else if (lowerCaseReason.contains("data too large") || lowerCaseReason.contains(CIRCUIT_BREAKING.name)) {
+            return CIRCUIT_BREAKING;
+        } else if (lowerCaseReason.contains("version conflict") || lowerCaseReason.contains(VERSION_CONFLICT.name)) {
+            return VERSION_CONFLICT;
+        } else if (lowerCaseReason.contains("failed to parse")) {
+            return MAPPER_PARSING;
+        }
+        return OTHER;
+    }
+
+    // The error type returned by elasticsearch for a bulk item, e.g. es_rejected_execution_exception
+    public static BulkErrorType fromType(String type) {
+        for (BulkErrorType errorType : values()) {
+            if (errorType.name.equals(type)) {
+                return errorType;
+            }
+        }
+        return OTHER;
+    }
+
+    public static BulkErrorType fromStatus(Integer status) {
+        if (status == null) {
+            return OTHER;
+        }
+        return switch (status) {
+            case STATUS_TOO_MANY_REQUESTS -> REJECTED_EXECUTION;
+            case STATUS_REQUEST_TOO_LARGE -> REQUEST_TOO_LARGE;
+            default -> OTHER;
+        };
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean isRetryable() {
+        return retryable;
+    }
+}
@@ -0,0 +1,261 @@
+package com.microservices.demo.elastic.index.client.util;
+
+import com.microservices.demo.config.ElasticConfigData;
+import com.microservices.demo.elastic.index.client.exception.ElasticIndexClientException;
+import com.microservices.demo.elastic.model.index.IndexModel;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.elasticsearch.BulkFailureException;
+import org.springframework.data.elasticsearch.UncategorizedElasticsearchException;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/*
+ Sends the documents in bulk requests and inspects the outcome of every item.
+
+ (0) The documents are split into chunks of at most max-batch-size documents and max-batch-bytes of estimated bulk
+     body, so a large poll batch or long texts do not exceed http.max_content_length or allocate a huge request body on
+     the client and the node. The chunks are sent concurrently on a pool of max-concurrent-batches threads, which is
+     shared by all callers and caps the bulk requests in flight. The documents and estimated bytes of every chunk are
+     recorded in the elastic.index.bulk.chunk.documents and elastic.index.bulk.chunk.bytes distributions.
+     The repository and operations index clients and the NDJSON fast path are chunked here, the bulk ingester and the
+     reactive index client size their bulk requests with their own settings.
+ (1) Items that are rejected by elasticsearch because the write thread pool queue is full (429 es_rejected_execution)
+     or because of a circuit breaker, are retried alone with exponential backoff, the items that are indexed are not
+     sent again. Items failing for any other reason (mapping errors) are not retried.
+ (2) A bulk request that is rejected as a whole with 413 (request too large) is split in two halves, and a whole
+     request rejected with 429 is retried after the backoff.
+ (3) Every failed item is counted in elastic.index.bulk.failures with its error type, retries and splits are counted
+     in elastic.index.bulk.retries and elastic.index.bulk.splits.
+ (4) A version conflict means that a document with the same or a newer external version is already indexed, so the
+     item is treated as indexed and counted in elastic.index.duplicates.skipped.
+
+ Spring data elasticsearch only returns the error reason of a failed item in the BulkFailureException, so the error
+ type is derived from the reason. The bulk index function of the NDJSON fast path throws the same exceptions, so its
+ chunks are split, retried and counted the same way.
+ If documents still fail after the retries, an ElasticIndexClientException is thrown, so the kafka batch is not
+ acknowledged.
+ */
+@Component
+public class ElasticBulkIndexUtil<T extends IndexModel> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ElasticBulkIndexUtil.class);
+
+    private final ElasticConfigData.BulkRetry bulkRetry;
+
+    private final MeterRegistry meterRegistry;
+
+    private final ExecutorService bulkExecutorService;
+
+    private final DistributionSummary chunkDocumentsSummary;
+
+    private final DistributionSummary chunkBytesSummary;
+
+    public ElasticBulkIndexUtil(ElasticConfigData configData, MeterRegistry registry) {
+        this.bulkRetry = configData.getBulkRetry();
+        this.meterRegistry = registry;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.bulkExecutorService = Executors.newFixedThreadPool(bulkRetry.getMaxConcurrentBatches(), runnable -> {
+            Thread thread = new Thread(runnable, "elastic-bulk-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.chunkDocumentsSummary = DistributionSummary.builder("elastic.index.bulk.chunk.documents")
+                .publishPercentileHistogram()
+                .register(registry);
+        this.chunkBytesSummary = DistributionSummary.builder("elastic.index.bulk.chunk.bytes")
+                .baseUnit("bytes")
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    @PreDestroy
+    public void close() {
+        bulkExecutorService.shutdown();
+    }
+
+    public List<String> bulkIndex(List<T> documents, Function<List<T>, List<String>> bulkIndexFunction) {
+        return bulkIndex(documents, IndexModel::getId, IndexModel::estimateSizeBytes, bulkIndexFunction);
+    }
+
+    // For documents that are not index models, e.g. the avro records that are encoded directly into the bulk body
+    public <D> List<String> bulkIndex(List<D> documents,
+                                      Function<D, String> idFunction,
+                                      ToIntFunction<D> sizeFunction,
+                                      Function<List<D>, List<String>> bulkIndexFunction) {
+        List<List<D>> chunks = getChunks(documents, sizeFunction);
+        Map<String, String> failedDocuments = Collections.synchronizedMap(new LinkedHashMap<>());
+        List<String> documentIds;
+        if (chunks.size() == 1) {
+            documentIds = new ArrayList<>(documents.size());
+            indexBatch(chunks.get(0), idFunction, bulkIndexFunction, documentIds, failedDocuments);
+        } else {
+            documentIds = indexChunks(chunks, idFunction, bulkIndexFunction, failedDocuments);
+        }
+        if (!failedDocuments.isEmpty()) {
+            LOG.error("{} of {} documents could not be indexed: {}", failedDocuments.size(), documents.size(),
+                    failedDocuments);
+            throw new ElasticIndexClientException(failedDocuments.size() + " of " + documents.size() +
+                    " documents could not be indexed, ids: " + failedDocuments.keySet());
+        }
+        return documentIds;
+    }
+
+    // Waits for all chunks, so no bulk request of the documents is in flight when a failure is thrown
+    private <D> List<String> indexChunks(List<List<D>> chunks,
+                                         Function<D, String> idFunction,
+                                         Function<List<D>, List<String>> bulkIndexFunction,
+                                         Map<String, String> failedDocuments) {
+        List<CompletableFuture<List<String>>> chunkFutures = chunks.stream()
+                .map(chunk -> CompletableFuture.supplyAsync(() -> {
+                    List<String> chunkDocumentIds = new ArrayList<>(chunk.size());
+                    indexBatch(chunk, idFunction, bulkIndexFunction, chunkDocumentIds, failedDocuments);
+                    return chunkDocumentIds;
+                }, bulkExecutorService))
+                .toList();
+        try {
+            CompletableFuture.allOf(chunkFutures.toArray(CompletableFuture[]::new)).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new ElasticIndexClientException("Bulk request failed", e.getCause());
+        }
+        List<String> documentIds = new ArrayList<>();
+        chunkFutures.forEach(chunkFuture -> documentIds.addAll(chunkFuture.join()));
+        return documentIds;
+    }
+
+    private <D> List<List<D>> getChunks(List<D> documents, ToIntFunction<D> sizeFunction) {
+        List<List<D>> chunks = new ArrayList<>();
+        int maxBatchSize = bulkRetry.getMaxBatchSize();
+        long maxBatchBytes = bulkRetry.getMaxBatchBytes();
+        int from = 0;
+        long chunkBytes = 0;
+        for (int i = 0; i < documents.size(); i++) {
+            int documentBytes = sizeFunction.applyAsInt(documents.get(i));
+            if (i > from && (i - from == maxBatchSize || chunkBytes + documentBytes > maxBatchBytes)) {
+                addChunk(chunks, documents.subList(from, i), chunkBytes);
+                from = i;
+                chunkBytes = 0;
+            }
+            chunkBytes += documentBytes;
+        }
+        if (from < documents.size()) {
+            addChunk(chunks, documents.subList(from, documents.size()), chunkBytes);
+        }
+        return chunks;
+    }
+
+    private <D> void addChunk(List<List<D>> chunks, List<D> chunk, long chunkBytes) {
+        chunks.add(chunk);
+        chunkDocumentsSummary.record(chunk.size());
+        chunkBytesSummary.record(chunkBytes);
+    }
+
+    private <D> void indexBatch(List<D> batch,
+                                Function<D, String> idFunction,
+                                Function<List<D>, List<String>> bulkIndexFunction,
+                                List<String> documentIds,
+                                Map<String, String> failedDocuments) {
+        List<D> pending = batch;
+        long backoffMs = bulkRetry.getInitialBackoffMs();
+        for (int attempt = 0; ; attempt++) {
+            try {
+                documentIds.addAll(bulkIndexFunction.apply(pending));
+                return;
+            } catch (BulkFailureException e) {
+                pending = getRetryableDocuments(pending, idFunction, e.getFailedDocuments(), attempt, documentIds,
+                        failedDocuments);
+                if (pending.isEmpty()) {
+                    return;
+                }
+            } catch (UncategorizedElasticsearchException e) {
+                if (isStatus(e, BulkErrorType.STATUS_REQUEST_TOO_LARGE) && pending.size() > 1) {
+                    int half = pending.size() / 2;
+                    LOG.warn("Bulk request of {} documents is too large, splitting it in two", pending.size());
+                    meterRegistry.counter("elastic.index.bulk.splits").increment();
+                    indexBatch(pending.subList(0, half), idFunction, bulkIndexFunction, documentIds,
+                            failedDocuments);
+                    indexBatch(pending.subList(half, pending.size()), idFunction, bulkIndexFunction, documentIds,
+                            failedDocuments);
+                    return;
+                }
+                if (!isStatus(e, BulkErrorType.STATUS_TOO_MANY_REQUESTS) || attempt >= bulkRetry.getMaxRetries()) {
+                    countFailures(BulkErrorType.fromStatus(e.getStatusCode()), pending.size());
+                    throw new ElasticIndexClientException("Bulk request of " + pending.size() +
+                            " documents failed with status " + e.getStatusCode(), e);
+                }
+                countFailures(BulkErrorType.REJECTED_EXECUTION, pending.size());
+            }
+            LOG.warn("Retrying {} rejected documents in {} ms, attempt {} of {}", pending.size(), backoffMs,
+                    attempt + 1, bulkRetry.getMaxRetries());
+            meterRegistry.counter("elastic.index.bulk.retries").increment(pending.size());
+            sleep(backoffMs);
+            backoffMs = Math.min((long) (backoffMs * bulkRetry.getBackoffMultiplier()), bulkRetry.getMaxBackoffMs());
+        }
+    }
+
+    private <D> List<D> getRetryableDocuments(List<D> pending,
+                                              Function<D, String> idFunction,
+                                              Map<String, String> itemFailures,
+                                              int attempt,
+                                              List<String> documentIds,
+                                              Map<String, String> failedDocuments) {
+        List<D> retryableDocuments = new ArrayList<>();
+        for (D document : pending) {
+            String documentId = idFunction.apply(document);
+            String reason = itemFailures.get(documentId);
+            if (reason == null) {
+                documentIds.add(documentId);
+                continue;
+            }
+            BulkErrorType errorType = BulkErrorType.fromReason(reason);
+            if (errorType == BulkErrorType.VERSION_CONFLICT) {
+                // The stored document has the same or a newer external version, it is a redelivered duplicate
+                meterRegistry.counter("elastic.index.duplicates.skipped").increment();
+                documentIds.add(documentId);
+                continue;
+            }
+            countFailures(errorType, 1);
+            if (errorType.isRetryable() && attempt < bulkRetry.getMaxRetries()) {
+                retryableDocuments.add(document);
+            } else {
+                failedDocuments.put(documentId, errorType.getName() + ": " + reason);
+            }
+        }
+        return retryableDocuments;
+    }
+
+    private void countFailures(BulkErrorType errorType, int count) {
+        meterRegistry.counter("elastic.index.bulk.failures", "type", errorType.getName()).increment(count);
+    }
+
+    private boolean isStatus(UncategorizedElasticsearchException e, int status) {
+        return e.getStatusCode() != null && e.getStatusCode() == status;
+    }
+
+    private void sleep(long backoffMs) {
+        try {
+            Thread.sleep(backoffMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ElasticIndexClientException("Interrupted while waiting to retry the bulk request!", e);
+        }
+    }
+}
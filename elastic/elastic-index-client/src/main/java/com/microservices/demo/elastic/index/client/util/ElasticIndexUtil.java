@@ -1,5 +1,6 @@
 package com.microservices.demo.elastic.index.client.util;
 
+import com.microservices.demo.config.ElasticConfigData;
 import com.microservices.demo.elastic.model.index.IndexModel;
 import org.springframework.data.elasticsearch.core.query.IndexQuery;
 import org.springframework.data.elasticsearch.core.query.IndexQueryBuilder;
@@ -11,12 +12,26 @@ import java.util.stream.Collectors;
 @Component
 public class ElasticIndexUtil<T extends IndexModel> {
 
+    private final ElasticConfigData elasticConfigData;
+
+    public ElasticIndexUtil(ElasticConfigData configData) {
+        this.elasticConfigData = configData;
+    }
+
     public List<IndexQuery> getIndexQueries(List<T> documents) {
         return documents.stream()
                 .map(document -> new IndexQueryBuilder()
                         .withId(document.getId())
                         .withObject(document)
+                        .withVersion(document.getVersion())
+                        .withRouting(getRouting(document))
                         .build()
                 ).collect(Collectors.toList());
     }
+
+    // With routing by userId, all documents of a user are on one shard, so a query by user searches a single shard
+    public String getRouting(T document) {
+        return Boolean.TRUE.equals(elasticConfigData.getRoutingByUserId()) && document.getUserId() != null ?
+                String.valueOf(document.getUserId()) : null;
+    }
 }
@@ -0,0 +1,221 @@
+package com.microservices.demo.elastic.index.client.util;
+
+import com.microservices.demo.config.ElasticConfigData;
+import com.microservices.demo.elastic.index.client.exception.ElasticIndexClientException;
+import com.microservices.demo.elastic.model.index.impl.TwitterIndexModel;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.elasticsearch.BulkFailureException;
+import org.springframework.data.elasticsearch.UncategorizedElasticsearchException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class ElasticBulkIndexUtilTest {
+
+    // Estimated bytes of a document with a text of 100 ascii characters, 256 bytes of overhead plus the text and its
+    // words
+    private static final int DOCUMENT_BYTES = 456;
+
+    private ElasticConfigData.BulkRetry bulkRetry;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private ElasticBulkIndexUtil<TwitterIndexModel> elasticBulkIndexUtil;
+
+    private List<List<String>> bulkRequests;
+
+    @BeforeEach
+    public void setUp() {
+        bulkRetry = new ElasticConfigData.BulkRetry();
+        bulkRetry.setMaxBatchSize(100);
+        bulkRetry.setMaxBatchBytes(10_000_000L);
+        bulkRetry.setMaxConcurrentBatches(2);
+        bulkRetry.setMaxRetries(2);
+        bulkRetry.setInitialBackoffMs(1L);
+        bulkRetry.setBackoffMultiplier(2.0);
+        bulkRetry.setMaxBackoffMs(5L);
+        bulkRequests = Collections.synchronizedList(new ArrayList<>());
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (elasticBulkIndexUtil != null) {
+            elasticBulkIndexUtil.close();
+        }
+    }
+
+    @Test
+    public void testBulkIndexSplitsByMaxBatchSize() {
+        bulkRetry.setMaxBatchSize(2);
+        elasticBulkIndexUtil = createBulkIndexUtil();
+
+        List<String> documentIds = elasticBulkIndexUtil.bulkIndex(getDocuments(5), recordingBulkIndex());
+
+        assertEquals(List.of("0", "1", "2", "3", "4"), documentIds);
+        assertEquals(List.of(List.of("0", "1"), List.of("2", "3"), List.of("4")), sortedBulkRequests());
+    }
+
+    @Test
+    public void testBulkIndexSplitsByMaxBatchBytes() {
+        bulkRetry.setMaxBatchBytes(3L * DOCUMENT_BYTES);
+        elasticBulkIndexUtil = createBulkIndexUtil();
+
+        List<String> documentIds = elasticBulkIndexUtil.bulkIndex(getDocuments(7), recordingBulkIndex());
+
+        assertEquals(7, documentIds.size());
+        assertEquals(List.of(List.of("0", "1", "2"), List.of("3", "4", "5"), List.of("6")), sortedBulkRequests());
+    }
+
+    @Test
+    public void testBulkIndexSendsDocumentLargerThanMaxBatchBytesAlone() {
+        bulkRetry.setMaxBatchBytes(DOCUMENT_BYTES - 1L);
+        elasticBulkIndexUtil = createBulkIndexUtil();
+
+        elasticBulkIndexUtil.bulkIndex(getDocuments(2), recordingBulkIndex());
+
+        assertEquals(List.of(List.of("0"), List.of("1")), sortedBulkRequests());
+    }
+
+    @Test
+    public void testBulkIndexRetriesOnlyRejectedDocuments() {
+        elasticBulkIndexUtil = createBulkIndexUtil();
+
+        List<String> documentIds = elasticBulkIndexUtil.bulkIndex(getDocuments(3), documents -> {
+            bulkRequests.add(getIds(documents));
+            if (bulkRequests.size() == 1) {
+                throw new BulkFailureException("Bulk indexing has errors",
+                        Map.of("1", "rejected execution of coordinating operation"));
+            }
+            return getIds(documents);
+        });
+
+        assertEquals(List.of(List.of("0", "1", "2"), List.of("1")), bulkRequests);
+        assertEquals(List.of("0", "2", "1"), documentIds);
+        assertEquals(1.0, meterRegistry.counter("elastic.index.bulk.retries").count());
+    }
+
+    @Test
+    public void testBulkIndexFailsAfterMaxRetries() {
+        elasticBulkIndexUtil = createBulkIndexUtil();
+
+        assertThrows(ElasticIndexClientException.class, () ->
+                elasticBulkIndexUtil.bulkIndex(getDocuments(2), documents -> {
+                    bulkRequests.add(getIds(documents));
+                    throw new BulkFailureException("Bulk indexing has errors",
+                            Map.of("1", "rejected execution of coordinating operation"));
+                }));
+        assertEquals(List.of(List.of("0", "1"), List.of("1"), List.of("1")), bulkRequests);
+    }
+
+    @Test
+    public void testBulkIndexSkipsVersionConflicts() {
+        elasticBulkIndexUtil = createBulkIndexUtil();
+
+        List<String> documentIds = elasticBulkIndexUtil.bulkIndex(getDocuments(2), documents -> {
+            bulkRequests.add(getIds(documents));
+            throw new BulkFailureException("Bulk indexing has errors", Map.of("1",
+                    "version conflict, current version [5] is higher than or equal to the one provided [3]"));
+        });
+
+        assertEquals(List.of("0", "1"), documentIds);
+        assertEquals(1, bulkRequests.size());
+        assertEquals(1.0, meterRegistry.counter("elastic.index.duplicates.skipped").count());
+    }
+
+    @Test
+    public void testBulkIndexDoesNotRetryMappingFailures() {
+        elasticBulkIndexUtil = createBulkIndexUtil();
+
+        assertThrows(ElasticIndexClientException.class, () ->
+                elasticBulkIndexUtil.bulkIndex(getDocuments(2), documents -> {
+                    bulkRequests.add(getIds(documents));
+                    throw new BulkFailureException("Bulk indexing has errors",
+                            Map.of("1", "failed to parse field [createdAt] of type [date]"));
+                }));
+        assertEquals(1, bulkRequests.size());
+    }
+
+    @Test
+    public void testBulkIndexSplitsRequestTooLarge() {
+        elasticBulkIndexUtil = createBulkIndexUtil();
+
+        List<String> documentIds = elasticBulkIndexUtil.bulkIndex(getDocuments(4), documents -> {
+            bulkRequests.add(getIds(documents));
+            if (documents.size() > 2) {
+                throw new UncategorizedElasticsearchException("Request entity too large", 413, null, null);
+            }
+            return getIds(documents);
+        });
+
+        assertEquals(List.of("0", "1", "2", "3"), documentIds);
+        assertEquals(List.of(List.of("0", "1", "2", "3"), List.of("0", "1"), List.of("2", "3")), bulkRequests);
+    }
+
+    // The NDJSON fast path indexes records that are not index models and reports the error type of failed items
+    @Test
+    public void testBulkIndexChunksAndRetriesOtherDocuments() {
+        bulkRetry.setMaxBatchSize(2);
+        elasticBulkIndexUtil = createBulkIndexUtil();
+
+        List<String> documentIds = elasticBulkIndexUtil.bulkIndex(List.of(0L, 1L, 2L), String::valueOf,
+                record -> DOCUMENT_BYTES, records -> {
+                    List<String> ids = records.stream().map(String::valueOf).toList();
+                    bulkRequests.add(ids);
+                    if (records.equals(List.of(0L, 1L))) {
+                        throw new BulkFailureException("Bulk request has 1 failed documents",
+                                Map.of("1", "es_rejected_execution_exception: rejected execution of bulk"));
+                    }
+                    return ids;
+                });
+
+        assertEquals(3, documentIds.size());
+        assertEquals(List.of(List.of("0", "1"), List.of("1"), List.of("2")), sortedBulkRequests());
+        assertEquals(1.0, meterRegistry.counter("elastic.index.bulk.retries").count());
+    }
+
+    private ElasticBulkIndexUtil<TwitterIndexModel> createBulkIndexUtil() {
+        ElasticConfigData elasticConfigData = new ElasticConfigData();
+        elasticConfigData.setBulkRetry(bulkRetry);
+        return new ElasticBulkIndexUtil<>(elasticConfigData, meterRegistry);
+    }
+
+    private Function<List<TwitterIndexModel>, List<String>> recordingBulkIndex() {
+        return documents -> {
+            bulkRequests.add(getIds(documents));
+            return getIds(documents);
+        };
+    }
+
+    // The chunks are sent concurrently, they are compared in the order of their first id
+    private List<List<String>> sortedBulkRequests() {
+        return bulkRequests.stream()
+                .sorted((first, second) -> Integer.compare(Integer.parseInt(first.get(0)),
+                        Integer.parseInt(second.get(0))))
+                .toList();
+    }
+
+    private List<TwitterIndexModel> getDocuments(int count) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> TwitterIndexModel.builder()
+                        .id(String.valueOf(i))
+                        .userId(1L)
+                        .text("a".repeat((DOCUMENT_BYTES - 256) / 2))
+                        .build())
+                .toList();
+    }
+
+    private List<String> getIds(List<TwitterIndexModel> documents) {
+        return documents.stream().map(TwitterIndexModel::getId).toList();
+    }
+}
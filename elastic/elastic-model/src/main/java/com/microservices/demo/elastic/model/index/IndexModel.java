@@ -2,4 +2,13 @@ package com.microservices.demo.elastic.model.index;
 
 public interface IndexModel {
     String getId();
+
+    // The routing key of the document when elastic-config.routing-by-user-id is enabled
+    Long getUserId();
+
+    // The external version of the document, null indexes the document without a version
+    Long getVersion();
+
+    // Estimated size of the document as an item of a bulk request body, used to bound the size of the bulk requests
+    int estimateSizeBytes();
 }
@@ -1,35 +1,118 @@
 package com.microservices.demo.elastic.model.index.impl;
 
 import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.microservices.demo.elastic.model.index.IndexModel;
 import lombok.Builder;
 import lombok.Data;
+import org.springframework.data.annotation.Version;
 import org.springframework.data.elasticsearch.annotations.DateFormat;
 import org.springframework.data.elasticsearch.annotations.Document;
 import org.springframework.data.elasticsearch.annotations.Field;
 import org.springframework.data.elasticsearch.annotations.FieldType;
+import org.springframework.data.elasticsearch.annotations.Routing;
+import org.springframework.data.elasticsearch.annotations.Setting;
 
 import java.time.LocalDateTime;
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
 
 @Data
 @Builder
-@Document(indexName = "#{@elasticConfigData.indexName}")
+@Document(indexName = "#{@elasticConfigData.indexName}", versionType = Document.VersionType.EXTERNAL,
+        storeVersionInSource = false)
+// Shards, replicas and refresh interval are taken from the index template instead of the spring data defaults
+@Setting(useServerConfiguration = true)
+// Routes the documents of a user to one shard if elastic-config.routing-by-user-id is enabled, used by repository saves
+@Routing("@elasticConfigData.routingByUserId == true ? #entity.userId : null")
 public class TwitterIndexModel implements IndexModel {
 
+    // Action line, field names, id, userId, createdAt and version of a bulk index item, everything except the text
+    private static final int BULK_ITEM_OVERHEAD_BYTES = 256;
+
+    private static final Pattern WORD_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    // The _english_ stop words of the tweet_text analyzer
+    private static final Set<String> STOP_WORDS = Set.of("a", "an", "and", "are", "as", "at", "be", "but", "by",
+            "for", "if", "in", "into", "is", "it", "no", "not", "of", "on", "or", "such", "that", "the", "their",
+            "then", "there", "these", "they", "this", "to", "was", "will", "with");
+
     @JsonProperty
     private String id;
     @JsonProperty
     private Long userId;
     @JsonProperty
     private String text;
+    // The distinct words of the text, lower case and without stop words, see toWords. Only the doc values are stored,
+    // so the terms aggregation of the word counts reads them without fielddata on the text.
+    @Field(type = FieldType.Keyword, normalizer = "tweet_word", index = false)
+    @JsonProperty
+    private List<String> words;
 
     //convert createdAt, from local date time to the elasticsearch date during indexing operation
     // for year, we use 'u' instead of 'y', which is the correct way of defining a year in the pattern for a custom Elasticsearch date.
-    @Field(type = FieldType.Date, format = {}, pattern = "uuuu-MM-dd'T'HH:mm:ssZZ")
+    // The documents are written with the first pattern. epoch_millis matches the format of the index template, so an
+    // index created from this mapping accepts the documents that were indexed with epoch millis too.
+    @Field(type = FieldType.Date, format = {}, pattern = {"uuuu-MM-dd'T'HH:mm:ssZZ", "epoch_millis"})
     // Required parsing a Json to this object
     @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "uuuu-MM-dd'T'HH:mm:ssZZ")
     @JsonProperty
     private ZonedDateTime createdAt;
+
+    // External version, derived from the kafka offset or createdAt. Elasticsearch rejects an index request with a
+    // version that is not greater than the stored one, so a redelivered document ends up as a cheap version conflict.
+    @Version
+    @JsonIgnore
+    private Long version;
+
+    @Override
+    public int estimateSizeBytes() {
+        return estimateSizeBytes(text);
+    }
+
+    // Also used for the avro records of the NDJSON fast path, which are not mapped to a TwitterIndexModel. The words
+    // are at most as long as the text plus a quote and a comma per word, they are counted as a second text.
+    public static int estimateSizeBytes(String text) {
+        return BULK_ITEM_OVERHEAD_BYTES + 2 * getUtf8Length(text);
+    }
+
+    // Splits the text at every character that is not a letter or a digit, the words field of the NDJSON fast path too
+    public static List<String> toWords(String text) {
+        if (text == null) {
+            return List.of();
+        }
+        Set<String> words = new LinkedHashSet<>();
+        for (String word : WORD_SEPARATOR.split(text.toLowerCase(Locale.ROOT))) {
+            if (!word.isEmpty() && !STOP_WORDS.contains(word)) {
+                words.add(word);
+            }
+        }
+        return new ArrayList<>(words);
+    }
+
+    // Counted without encoding the text, json escapes are not taken into account
+    private static int getUtf8Length(String value) {
+        if (value == null) {
+            return 0;
+        }
+        int length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                length += 1;
+            } else if (c < 0x800 || Character.isSurrogate(c)) {
+                // a surrogate pair is encoded in 4 bytes
+                length += 2;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
 }
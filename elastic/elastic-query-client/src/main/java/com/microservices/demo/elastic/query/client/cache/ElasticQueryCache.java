@@ -0,0 +1,78 @@
+package com.microservices.demo.elastic.query.client.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.microservices.demo.config.ElasticQueryConfigData;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/*
+ Result caches of the query client, one bounded caffeine cache with a time to live for every query type that has an
+ enabled policy in elastic-query-config.cache.policies. A query type without a cache is always sent to elasticsearch.
+ Each cache is bound to micrometer as elastic.query.<query type>, which publishes cache.gets (hit / miss),
+ cache.load.duration, cache.evictions and cache.size, and the hit ratio as cache.hit.ratio.
+ */
+@Component
+public class ElasticQueryCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ElasticQueryCache.class);
+
+    private static final String CACHE_NAME_PREFIX = "elastic.query.";
+
+    private final Map<String, Cache<String, Object>> caches = new HashMap<>();
+
+    public ElasticQueryCache(ElasticQueryConfigData configData, MeterRegistry meterRegistry) {
+        ElasticQueryConfigData.Cache cacheConfig = configData.getCache();
+        if (cacheConfig == null || !Boolean.TRUE.equals(cacheConfig.getEnabled()) ||
+                cacheConfig.getPolicies() == null) {
+            return;
+        }
+        cacheConfig.getPolicies().forEach((queryType, policy) -> {
+            if (!Boolean.TRUE.equals(policy.getEnabled())) {
+                return;
+            }
+            Cache<String, Object> cache = Caffeine.newBuilder()
+                    .maximumSize(policy.getMaximumSize())
+                    .expireAfterWrite(Duration.ofMillis(policy.getTtlMs()))
+                    .recordStats()
+                    .build();
+            String cacheName = CACHE_NAME_PREFIX + queryType;
+            CaffeineCacheMetrics.monitor(meterRegistry, cache, cacheName);
+            Gauge.builder("cache.hit.ratio", cache, c -> c.stats().hitRate())
+                    .tag("cache", cacheName)
+                    .register(meterRegistry);
+            caches.put(queryType, cache);
+            LOG.info("Result cache for {} queries with maximum size {} and ttl {} ms", queryType,
+                    policy.getMaximumSize(), policy.getTtlMs());
+        });
+    }
+
+    // Concurrent calls with the same key wait for one query, failed queries are not cached
+    @SuppressWarnings("unchecked")
+    public <V> V get(String queryType, String key, Supplier<V> query) {
+        Cache<String, Object> cache = caches.get(queryType);
+        if (cache == null) {
+            return query.get();
+        }
+        return (V) cache.get(key, k -> query.get());
+    }
+
+    public void invalidateAll() {
+        caches.values().forEach(Cache::invalidateAll);
+    }
+
+    // Texts that only differ in case and white space are analyzed into the same terms, they share a cache entry
+    public static String normalize(String text) {
+        return text == null ? "" : text.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+}
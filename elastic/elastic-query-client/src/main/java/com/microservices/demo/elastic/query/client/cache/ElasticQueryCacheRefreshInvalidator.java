@@ -0,0 +1,61 @@
+package com.microservices.demo.elastic.query.client.cache;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch.indices.IndicesStatsResponse;
+import com.microservices.demo.config.ElasticConfigData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/*
+ Clears the result caches when new documents became searchable (elastic-query-config.cache.invalidate-on-refresh).
+ Every refresh-check-interval-ms the count of external refreshes of the primaries of the index is read, a refresh
+ that makes documents visible to searches increases it, a scheduled refresh without new documents does not. The ttl
+ of the cache policies still applies, it bounds the staleness if the stats can not be read.
+ */
+@Component
+@EnableScheduling
+@ConditionalOnExpression("${elastic-query-config.cache.enabled:false} && " +
+        "${elastic-query-config.cache.invalidate-on-refresh:false}")
+public class ElasticQueryCacheRefreshInvalidator {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ElasticQueryCacheRefreshInvalidator.class);
+
+    private final ElasticConfigData elasticConfigData;
+
+    private final ElasticsearchClient elasticsearchClient;
+
+    private final ElasticQueryCache elasticQueryCache;
+
+    private long lastRefreshTotal = -1;
+
+    public ElasticQueryCacheRefreshInvalidator(ElasticConfigData configData,
+                                               ElasticsearchClient client,
+                                               ElasticQueryCache queryCache) {
+        this.elasticConfigData = configData;
+        this.elasticsearchClient = client;
+        this.elasticQueryCache = queryCache;
+    }
+
+    @Scheduled(fixedDelayString = "${elastic-query-config.cache.refresh-check-interval-ms}")
+    public void invalidateOnRefresh() {
+        try {
+            IndicesStatsResponse stats = elasticsearchClient.indices().stats(s -> s
+                    .index(elasticConfigData.getIndexName())
+                    .metric("refresh"));
+            long refreshTotal = stats.all().primaries().refresh().externalTotal();
+            if (lastRefreshTotal >= 0 && refreshTotal != lastRefreshTotal) {
+                elasticQueryCache.invalidateAll();
+                LOG.debug("Index {} refreshed {} times since the last check, query caches cleared",
+                        elasticConfigData.getIndexName(), refreshTotal - lastRefreshTotal);
+            }
+            lastRefreshTotal = refreshTotal;
+        } catch (Exception e) {
+            LOG.warn("Refresh stats of index {} could not be read, query caches expire with their ttl",
+                    elasticConfigData.getIndexName(), e);
+        }
+    }
+}
@@ -2,13 +2,66 @@ package com.microservices.demo.elastic.query.client.service;
 
 import com.microservices.demo.elastic.model.index.IndexModel;
 
+import java.time.ZonedDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
 
 public interface ElasticQueryClient<T extends IndexModel> {
 
     T getIndexModelById(String id);
 
+    // The existing documents of the ids, in a single request
+    List<T> getIndexModelsByIds(Collection<String> ids);
+
     List<T> getIndexModelByText(String text);
 
+    /*
+     The overloads with ids restrict the results to these document ids (e.g. the documents a user may read) in the
+     query, so no other document is fetched. null ids returns all matching documents.
+     */
+    List<T> getIndexModelByText(String text, Collection<String> ids);
+
+    /*
+     The documents of every text, keyed by text, in a single multi search request. ids restricts the results of every
+     text to these document ids, null returns all matching documents.
+     */
+    Map<String, List<T>> getIndexModelsByTexts(List<String> texts, Collection<String> ids);
+
+    // Searches only the indices that overlap the time range, from or to can be null for an open range
+    List<T> getIndexModelByTextAndTimeRange(String text, ZonedDateTime from, ZonedDateTime to);
+
+    // A single shard request if the documents are routed by userId
+    List<T> getIndexModelByUserId(Long userId);
+
+    List<T> getIndexModelByUserId(Long userId, Collection<String> ids);
+
     List<T> getAllIndexModels();
+
+    List<T> getAllIndexModels(Collection<String> ids);
+
+    /*
+     Aggregations of the documents in a time range, computed in elasticsearch without returning the documents. The
+     counts are keyed by bucket in the order of the buckets, from or to can be null for an open range and ids restricts
+     the documents to these ids, null counts all documents.
+     */
+    // The most frequent words of the texts, every document counts a word once
+    Map<String, Long> getTextTermCounts(ZonedDateTime from, ZonedDateTime to, int size, Collection<String> ids);
+
+    // The documents of every interval (e.g. 1h), matching text or all documents if text is null
+    Map<String, Long> getDocumentCountsByInterval(String text, ZonedDateTime from, ZonedDateTime to, String interval,
+                                                  Collection<String> ids);
+
+    // The users with the most documents
+    Map<String, Long> getDocumentCountsByUserId(ZonedDateTime from, ZonedDateTime to, int size,
+                                                Collection<String> ids);
+
+    /*
+     All documents, read page by page while the stream is consumed. The stream holds a point in time on the indices,
+     it has to be closed after use (try-with-resources).
+     */
+    Stream<T> streamAllIndexModels();
+
+    Stream<T> streamAllIndexModels(Collection<String> ids);
 }
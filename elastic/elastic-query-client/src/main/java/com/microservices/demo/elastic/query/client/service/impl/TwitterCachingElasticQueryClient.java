@@ -0,0 +1,137 @@
+package com.microservices.demo.elastic.query.client.service.impl;
+
+import com.microservices.demo.elastic.model.index.impl.TwitterIndexModel;
+import com.microservices.demo.elastic.query.client.cache.ElasticQueryCache;
+import com.microservices.demo.elastic.query.client.service.ElasticQueryClient;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+
+import java.time.ZonedDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/*
+ The query client used by the services, it answers the queries from the result caches of ElasticQueryCache and sends
+ the misses to TwitterElasticRepositoryQueryClient. With elastic-query-config.cache.enabled false, or without a policy
+ for a query type, every query goes to elasticsearch. Queries restricted to the ids of a caller are always sent to
+ elasticsearch with the ids filter, the cached result of the unrestricted query is only a page of the matches and would
+ miss the permitted documents outside of it. getIndexModelsByIds, getIndexModelsByTexts, the aggregations,
+ getAllIndexModels and streamAllIndexModels are not cached.
+ */
+@Primary
+@Service
+public class TwitterCachingElasticQueryClient implements ElasticQueryClient<TwitterIndexModel> {
+
+    private static final String BY_ID = "by-id";
+
+    private static final String BY_TEXT = "by-text";
+
+    private static final String BY_TEXT_AND_TIME_RANGE = "by-text-and-time-range";
+
+    private static final String BY_USER_ID = "by-user-id";
+
+    private final TwitterElasticRepositoryQueryClient twitterElasticRepositoryQueryClient;
+
+    private final ElasticQueryCache elasticQueryCache;
+
+    public TwitterCachingElasticQueryClient(TwitterElasticRepositoryQueryClient repositoryQueryClient,
+                                            ElasticQueryCache queryCache) {
+        this.twitterElasticRepositoryQueryClient = repositoryQueryClient;
+        this.elasticQueryCache = queryCache;
+    }
+
+    @Override
+    public TwitterIndexModel getIndexModelById(String id) {
+        return elasticQueryCache.get(BY_ID, id, () -> twitterElasticRepositoryQueryClient.getIndexModelById(id));
+    }
+
+    @Override
+    public List<TwitterIndexModel> getIndexModelsByIds(Collection<String> ids) {
+        return twitterElasticRepositoryQueryClient.getIndexModelsByIds(ids);
+    }
+
+    @Override
+    public List<TwitterIndexModel> getIndexModelByText(String text) {
+        return elasticQueryCache.get(BY_TEXT, ElasticQueryCache.normalize(text), () ->
+                List.copyOf(twitterElasticRepositoryQueryClient.getIndexModelByText(text)));
+    }
+
+    @Override
+    public Map<String, List<TwitterIndexModel>> getIndexModelsByTexts(List<String> texts, Collection<String> ids) {
+        return twitterElasticRepositoryQueryClient.getIndexModelsByTexts(texts, ids);
+    }
+
+    @Override
+    public List<TwitterIndexModel> getIndexModelByText(String text, Collection<String> ids) {
+        if (ids == null) {
+            return getIndexModelByText(text);
+        }
+        return twitterElasticRepositoryQueryClient.getIndexModelByText(text, ids);
+    }
+
+    // The time range is the result window of the query, it is part of the key
+    @Override
+    public List<TwitterIndexModel> getIndexModelByTextAndTimeRange(String text, ZonedDateTime from, ZonedDateTime to) {
+        String key = ElasticQueryCache.normalize(text) + "|" + toEpochMilli(from) + "|" + toEpochMilli(to);
+        return elasticQueryCache.get(BY_TEXT_AND_TIME_RANGE, key, () ->
+                List.copyOf(twitterElasticRepositoryQueryClient.getIndexModelByTextAndTimeRange(text, from, to)));
+    }
+
+    @Override
+    public List<TwitterIndexModel> getIndexModelByUserId(Long userId) {
+        return elasticQueryCache.get(BY_USER_ID, String.valueOf(userId), () ->
+                List.copyOf(twitterElasticRepositoryQueryClient.getIndexModelByUserId(userId)));
+    }
+
+    @Override
+    public List<TwitterIndexModel> getIndexModelByUserId(Long userId, Collection<String> ids) {
+        if (ids == null) {
+            return getIndexModelByUserId(userId);
+        }
+        return twitterElasticRepositoryQueryClient.getIndexModelByUserId(userId, ids);
+    }
+
+    @Override
+    public List<TwitterIndexModel> getAllIndexModels() {
+        return twitterElasticRepositoryQueryClient.getAllIndexModels();
+    }
+
+    @Override
+    public List<TwitterIndexModel> getAllIndexModels(Collection<String> ids) {
+        return twitterElasticRepositoryQueryClient.getAllIndexModels(ids);
+    }
+
+    @Override
+    public Map<String, Long> getTextTermCounts(ZonedDateTime from, ZonedDateTime to, int size,
+                                               Collection<String> ids) {
+        return twitterElasticRepositoryQueryClient.getTextTermCounts(from, to, size, ids);
+    }
+
+    @Override
+    public Map<String, Long> getDocumentCountsByInterval(String text, ZonedDateTime from, ZonedDateTime to,
+                                                         String interval, Collection<String> ids) {
+        return twitterElasticRepositoryQueryClient.getDocumentCountsByInterval(text, from, to, interval, ids);
+    }
+
+    @Override
+    public Map<String, Long> getDocumentCountsByUserId(ZonedDateTime from, ZonedDateTime to, int size,
+                                                       Collection<String> ids) {
+        return twitterElasticRepositoryQueryClient.getDocumentCountsByUserId(from, to, size, ids);
+    }
+
+    @Override
+    public Stream<TwitterIndexModel> streamAllIndexModels() {
+        return twitterElasticRepositoryQueryClient.streamAllIndexModels();
+    }
+
+    @Override
+    public Stream<TwitterIndexModel> streamAllIndexModels(Collection<String> ids) {
+        return twitterElasticRepositoryQueryClient.streamAllIndexModels(ids);
+    }
+
+    private String toEpochMilli(ZonedDateTime time) {
+        return time == null ? "" : String.valueOf(time.toInstant().toEpochMilli());
+    }
+}
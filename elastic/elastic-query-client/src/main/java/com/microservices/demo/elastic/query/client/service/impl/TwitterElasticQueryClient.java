@@ -1,28 +1,61 @@
 package com.microservices.demo.elastic.query.client.service.impl;
 
+import co.elastic.clients.elasticsearch._types.aggregations.Aggregate;
 import com.microservices.demo.config.ElasticConfigData;
 import com.microservices.demo.config.ElasticQueryConfigData;
+import com.microservices.demo.elastic.config.index.RollingIndexResolver;
 import com.microservices.demo.elastic.model.index.impl.TwitterIndexModel;
 import com.microservices.demo.elastic.query.client.exception.ElasticQueryClientException;
 import com.microservices.demo.elastic.query.client.service.ElasticQueryClient;
 import com.microservices.demo.elastic.query.client.util.ElasticQueryUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.data.elasticsearch.client.elc.ElasticsearchAggregations;
 import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.MultiGetItem;
 import org.springframework.data.elasticsearch.core.SearchHit;
 import org.springframework.data.elasticsearch.core.SearchHits;
 import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
 import org.springframework.data.elasticsearch.core.query.Query;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
+/*
+ Queries restricted to the permitted ids of a caller put the ids in an ids filter. An id set larger than
+ elastic-query-config.max-ids-filter-size is split into chunks of that size, so no request carries an unbounded ids
+ filter or asks for more hits than index.max_result_window:
+ (1) The searches of the chunks are sent in one multi search. Text and user searches keep the best scored hits of all
+     chunks up to the page size of one search, searches for all documents return the hits of all chunks.
+ (2) The aggregations are run per chunk and their counts summed. The top terms of the chunks are merged, like the top
+     terms of the shards of an index, so counts of terms outside the top terms of a chunk can be missing.
+ (3) The stream reads the chunks one after the other in the same point in time.
+ */
 @Service
 public class TwitterElasticQueryClient implements ElasticQueryClient<TwitterIndexModel> {
 
     private static final Logger LOG = LoggerFactory.getLogger(TwitterElasticQueryClient.class);
 
+    private static final String AGGREGATION_NAME = "counts";
+
     private final ElasticConfigData elasticConfigData;
 
     private final ElasticQueryConfigData elasticQueryConfigData;
@@ -31,14 +64,18 @@ public class TwitterElasticQueryClient implements ElasticQueryClient<TwitterInde
 
     private final ElasticQueryUtil<TwitterIndexModel> elasticQueryUtil;
 
+    private final RollingIndexResolver rollingIndexResolver;
+
     public TwitterElasticQueryClient(ElasticConfigData configData,
                                      ElasticQueryConfigData queryConfigData,
                                      ElasticsearchOperations elasticOperations,
-                                     ElasticQueryUtil<TwitterIndexModel> queryUtil) {
+                                     ElasticQueryUtil<TwitterIndexModel> queryUtil,
+                                     RollingIndexResolver indexResolver) {
         this.elasticConfigData = configData;
         this.elasticQueryConfigData = queryConfigData;
         this.elasticsearchOperations = elasticOperations;
         this.elasticQueryUtil = queryUtil;
+        this.rollingIndexResolver = indexResolver;
     }
 
     @Override
@@ -54,22 +91,368 @@ public class TwitterElasticQueryClient implements ElasticQueryClient<TwitterInde
         return searchResult.getContent();
     }
 
+    /*
+     A multi get reads the documents from the shards of their ids in one request. It needs the routing of a document
+     and a single concrete index, so with routing by userId or rolling indices behind the alias the ids are searched
+     with an ids query on all shards of all indices instead, which returns up to one hit per id.
+     */
+    @Override
+    public List<TwitterIndexModel> getIndexModelsByIds(Collection<String> ids) {
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        if (Boolean.TRUE.equals(elasticConfigData.getRoutingByUserId()) ||
+                rollingIndexResolver.isRollingIndexEnabled()) {
+            return search(elasticQueryUtil::getSearchQueryForAll, ids, false,
+                    "{} of documents of {} ids retrieved successfully", ids.size());
+        }
+        List<MultiGetItem<TwitterIndexModel>> multiGetItems = getIdsChunks(ids).stream()
+                .flatMap(idsChunk -> elasticsearchOperations.multiGet(elasticQueryUtil.getSearchQueryByIds(idsChunk),
+                        TwitterIndexModel.class, IndexCoordinates.of(elasticConfigData.getIndexName())).stream())
+                .toList();
+        List<MultiGetItem.Failure> failures = multiGetItems.stream()
+                .filter(MultiGetItem::isFailed)
+                .map(MultiGetItem::getFailure)
+                .toList();
+        if (!failures.isEmpty()) {
+            failures.forEach(failure -> LOG.error("Document with id {} could not be retrieved", failure.getId(),
+                    failure.getException()));
+            throw new ElasticQueryClientException(failures.size() + " of " + ids.size() +
+                    " documents could not be retrieved");
+        }
+        List<TwitterIndexModel> indexModels = multiGetItems.stream()
+                .filter(MultiGetItem::hasItem)
+                .map(MultiGetItem::getItem)
+                .collect(Collectors.toList());
+        LOG.info("{} of documents of {} ids retrieved successfully", indexModels.size(), ids.size());
+        return indexModels;
+    }
+
     @Override
     public List<TwitterIndexModel> getIndexModelByText(String text) {
-        Query query = elasticQueryUtil.getSearchQueryByFieldText(elasticQueryConfigData.getTextField(), text);
-        return search(query, "{} of documents with text {} retrieved successfully", text);
+        return getIndexModelByText(text, null);
+    }
+
+    @Override
+    public List<TwitterIndexModel> getIndexModelByText(String text, Collection<String> ids) {
+        return search(idsChunk -> elasticQueryUtil.getSearchQueryByFieldText(elasticQueryConfigData.getTextField(),
+                text, idsChunk), ids, true, "{} of documents with text {} retrieved successfully", text);
+    }
+
+    @Override
+    public Map<String, List<TwitterIndexModel>> getIndexModelsByTexts(List<String> texts, Collection<String> ids) {
+        List<String> distinctTexts = texts.stream().distinct().toList();
+        if (distinctTexts.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        // One query per text and chunk of the ids, the queries of a text are next to each other
+        List<Collection<String>> idsChunks = getIdsChunks(ids);
+        List<Query> queries = distinctTexts.stream()
+                .flatMap(text -> idsChunks.stream()
+                        .map(idsChunk -> elasticQueryUtil.getSearchQueryByFieldText(
+                                elasticQueryConfigData.getTextField(), text, idsChunk)))
+                .toList();
+        List<SearchHits<TwitterIndexModel>> searchResults = elasticsearchOperations.multiSearch(queries,
+                TwitterIndexModel.class, IndexCoordinates.of(elasticConfigData.getIndexName()));
+        Map<String, List<TwitterIndexModel>> indexModelsByText = new LinkedHashMap<>();
+        for (int i = 0; i < distinctTexts.size(); i++) {
+            int first = i * idsChunks.size();
+            indexModelsByText.put(distinctTexts.get(i), getHits(searchResults.subList(first,
+                    first + idsChunks.size()), getMaxResults(queries.get(first))));
+        }
+        LOG.info("Documents of {} texts retrieved successfully in a multi search", distinctTexts.size());
+        return indexModelsByText;
+    }
+
+    @Override
+    public List<TwitterIndexModel> getIndexModelByTextAndTimeRange(String text, ZonedDateTime from, ZonedDateTime to) {
+        List<String> indexNames = rollingIndexResolver.getIndexNames(from, to);
+        if (indexNames.isEmpty()) {
+            LOG.info("No index overlaps the range {} - {}", from, to);
+            return Collections.emptyList();
+        }
+        Query query = elasticQueryUtil.getSearchQueryByFieldTextAndTimeRange(elasticQueryConfigData.getTextField(),
+                text, elasticQueryConfigData.getCreatedAtField(), from, to);
+        SearchHits<TwitterIndexModel> searchResult = elasticsearchOperations.search(query, TwitterIndexModel.class,
+                IndexCoordinates.of(indexNames.toArray(new String[0])));
+        LOG.info("{} of documents with text {} between {} and {} retrieved successfully from indices {}",
+                searchResult.getTotalHits(), text, from, to, indexNames);
+        return searchResult.get().map(SearchHit::getContent).collect(Collectors.toList());
+    }
+
+    @Override
+    public List<TwitterIndexModel> getIndexModelByUserId(Long userId) {
+        return getIndexModelByUserId(userId, null);
+    }
+
+    @Override
+    public List<TwitterIndexModel> getIndexModelByUserId(Long userId, Collection<String> ids) {
+        String routing = Boolean.TRUE.equals(elasticConfigData.getRoutingByUserId()) ? String.valueOf(userId) : null;
+        return search(idsChunk -> elasticQueryUtil.getSearchQueryByUserId(elasticQueryConfigData.getUserIdField(),
+                userId, routing, idsChunk), ids, true,
+                "{} of documents with user id {} retrieved successfully with routing {}", userId, routing);
     }
 
     @Override
     public List<TwitterIndexModel> getAllIndexModels() {
-        Query query = elasticQueryUtil.getSearchQueryForAll();
-        return search(query, "{} number of documents retrieved successfully");
+        return getAllIndexModels(null);
+    }
+
+    @Override
+    public List<TwitterIndexModel> getAllIndexModels(Collection<String> ids) {
+        return search(elasticQueryUtil::getSearchQueryForAll, ids, false,
+                "{} number of documents retrieved successfully");
+    }
+
+    @Override
+    public Map<String, Long> getTextTermCounts(ZonedDateTime from, ZonedDateTime to, int size,
+                                               Collection<String> ids) {
+        return aggregate(idsChunk -> elasticQueryUtil.getAggregationQueryForTermsInTimeRange(AGGREGATION_NAME,
+                        elasticQueryConfigData.getTextWordsField(), elasticQueryConfigData.getCreatedAtField(), from,
+                        to, size, idsChunk), ids, from, to, this::getTermsCounts,
+                Map.Entry.<String, Long>comparingByValue().reversed(), size);
+    }
+
+    @Override
+    public Map<String, Long> getDocumentCountsByInterval(String text, ZonedDateTime from, ZonedDateTime to,
+                                                         String interval, Collection<String> ids) {
+        return aggregate(idsChunk -> elasticQueryUtil.getAggregationQueryForDateHistogram(AGGREGATION_NAME,
+                        elasticQueryConfigData.getTextField(), text, elasticQueryConfigData.getCreatedAtField(), from,
+                        to, interval, idsChunk), ids, from, to, this::getDateHistogramCounts,
+                Map.Entry.comparingByKey(), Integer.MAX_VALUE);
+    }
+
+    @Override
+    public Map<String, Long> getDocumentCountsByUserId(ZonedDateTime from, ZonedDateTime to, int size,
+                                                       Collection<String> ids) {
+        return aggregate(idsChunk -> elasticQueryUtil.getAggregationQueryForTermsInTimeRange(AGGREGATION_NAME,
+                        elasticQueryConfigData.getUserIdField(), elasticQueryConfigData.getCreatedAtField(), from, to,
+                        size, idsChunk), ids, from, to, this::getTermsCounts,
+                Map.Entry.<String, Long>comparingByValue().reversed(), size);
+    }
+
+    @Override
+    public Stream<TwitterIndexModel> streamAllIndexModels() {
+        return streamAllIndexModels(null);
+    }
+
+    @Override
+    public Stream<TwitterIndexModel> streamAllIndexModels(Collection<String> ids) {
+        PointInTimeIterator pointInTimeIterator = new PointInTimeIterator(getIdsChunks(ids));
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(pointInTimeIterator,
+                        Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(pointInTimeIterator::close);
+    }
+
+    // A single chunk for null ids or up to max-ids-filter-size ids, so the query is not changed
+    private List<Collection<String>> getIdsChunks(Collection<String> ids) {
+        int maxIdsFilterSize = elasticQueryConfigData.getMaxIdsFilterSize();
+        if (ids == null || ids.size() <= maxIdsFilterSize) {
+            return Collections.singletonList(ids);
+        }
+        List<String> idList = List.copyOf(ids);
+        List<Collection<String>> idsChunks = new ArrayList<>();
+        for (int i = 0; i < idList.size(); i += maxIdsFilterSize) {
+            idsChunks.add(idList.subList(i, Math.min(i + maxIdsFilterSize, idList.size())));
+        }
+        LOG.info("Ids filter of {} ids split into {} chunks", idList.size(), idsChunks.size());
+        return idsChunks;
+    }
+
+    /*
+     Sums the counts of the chunks. With more than one chunk the merged counts are sorted in the order of the buckets
+     of a single aggregation and limited to size.
+     */
+    private Map<String, Long> aggregate(Function<Collection<String>, Query> queryFunction, Collection<String> ids,
+                                        ZonedDateTime from, ZonedDateTime to,
+                                        Function<Optional<Aggregate>, Map<String, Long>> countsFunction,
+                                        Comparator<Map.Entry<String, Long>> bucketOrder, int size) {
+        List<Collection<String>> idsChunks = getIdsChunks(ids);
+        if (idsChunks.size() == 1) {
+            return countsFunction.apply(aggregate(queryFunction.apply(ids), from, to));
+        }
+        Map<String, Long> counts = new HashMap<>();
+        idsChunks.forEach(idsChunk -> countsFunction.apply(aggregate(queryFunction.apply(idsChunk), from, to))
+                .forEach((key, count) -> counts.merge(key, count, Long::sum)));
+        return counts.entrySet().stream()
+                .sorted(bucketOrder)
+                .limit(size)
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, (first, second) -> first,
+                        LinkedHashMap::new));
+    }
+
+    // Empty if no index overlaps the time range
+    private Optional<Aggregate> aggregate(Query query, ZonedDateTime from, ZonedDateTime to) {
+        List<String> indexNames = rollingIndexResolver.getIndexNames(from, to);
+        if (indexNames.isEmpty()) {
+            LOG.info("No index overlaps the range {} - {}", from, to);
+            return Optional.empty();
+        }
+        SearchHits<TwitterIndexModel> searchResult = elasticsearchOperations.search(query, TwitterIndexModel.class,
+                IndexCoordinates.of(indexNames.toArray(new String[0])));
+        ElasticsearchAggregations aggregations = (ElasticsearchAggregations) searchResult.getAggregations();
+        if (aggregations == null || aggregations.get(AGGREGATION_NAME) == null) {
+            return Optional.empty();
+        }
+        LOG.info("Aggregation between {} and {} retrieved successfully from indices {}", from, to, indexNames);
+        return Optional.of(aggregations.get(AGGREGATION_NAME).aggregation().getAggregate());
+    }
+
+    // String fields like the text return string terms, numeric fields like the userId long terms
+    private Map<String, Long> getTermsCounts(Optional<Aggregate> termsAggregate) {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        termsAggregate.ifPresent(aggregate -> {
+            if (aggregate.isLterms()) {
+                aggregate.lterms().buckets().array()
+                        .forEach(bucket -> counts.put(String.valueOf(bucket.key()), bucket.docCount()));
+            } else {
+                aggregate.sterms().buckets().array()
+                        .forEach(bucket -> counts.put(bucket.key().stringValue(), bucket.docCount()));
+            }
+        });
+        return counts;
+    }
+
+    private Map<String, Long> getDateHistogramCounts(Optional<Aggregate> dateHistogramAggregate) {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        dateHistogramAggregate.ifPresent(aggregate -> aggregate.dateHistogram().buckets().array()
+                .forEach(bucket -> counts.put(bucket.keyAsString() != null ? bucket.keyAsString() :
+                        String.valueOf(bucket.key()), bucket.docCount())));
+        return counts;
+    }
+
+    /*
+     Searches the ids in one query, or the chunks of the ids in one multi search. With bestScored the hits of the
+     chunks are merged by score and limited to the page size of one query, otherwise all hits are returned.
+     */
+    private List<TwitterIndexModel> search(Function<Collection<String>, Query> queryFunction, Collection<String> ids,
+                                           boolean bestScored, String logMessage, Object... logParams) {
+        List<Collection<String>> idsChunks = getIdsChunks(ids);
+        if (idsChunks.size() == 1) {
+            return search(queryFunction.apply(ids), logMessage, logParams);
+        }
+        List<Query> queries = idsChunks.stream().map(queryFunction).toList();
+        List<SearchHits<TwitterIndexModel>> searchResults = elasticsearchOperations.multiSearch(queries,
+                TwitterIndexModel.class, IndexCoordinates.of(elasticConfigData.getIndexName()));
+        List<TwitterIndexModel> indexModels = bestScored ? getHits(searchResults, getMaxResults(queries.get(0))) :
+                searchResults.stream()
+                        .flatMap(SearchHits::get)
+                        .map(SearchHit::getContent)
+                        .collect(Collectors.toList());
+        logResult(logMessage, indexModels.size(), logParams);
+        return indexModels;
+    }
+
+    // The best scored hits of the search results
+    private List<TwitterIndexModel> getHits(List<SearchHits<TwitterIndexModel>> searchResults, int maxResults) {
+        return searchResults.stream()
+                .flatMap(SearchHits::get)
+                .sorted(Comparator.comparingDouble((SearchHit<TwitterIndexModel> searchHit) -> searchHit.getScore())
+                        .reversed())
+                .limit(maxResults)
+                .map(SearchHit::getContent)
+                .collect(Collectors.toList());
+    }
+
+    private int getMaxResults(Query query) {
+        return query.getMaxResults() != null ? query.getMaxResults() : query.getPageable().getPageSize();
     }
 
     private List<TwitterIndexModel> search(Query query, String logMessage, Object... logParams) {
         SearchHits<TwitterIndexModel> searchResult = elasticsearchOperations.search(query, TwitterIndexModel.class,
                 IndexCoordinates.of(elasticConfigData.getIndexName()));
-        LOG.info(logMessage, searchResult.getTotalHits(), logParams);
+        logResult(logMessage, searchResult.getTotalHits(), logParams);
         return searchResult.get().map(SearchHit::getContent).collect(Collectors.toList());
     }
+
+    // The hit count is the first placeholder of the message, followed by the log params
+    private void logResult(String logMessage, long hitCount, Object... logParams) {
+        Object[] params = new Object[logParams.length + 1];
+        params[0] = hitCount;
+        System.arraycopy(logParams, 0, params, 1, logParams.length);
+        LOG.info(logMessage, params);
+    }
+
+    /*
+     Reads the pages of all documents with search_after in a point in time, so the documents are read from one
+     consistent view of the indices, and only one page is held in memory. The point in time is opened with the first
+     page and closed after the last one, or when the stream is closed before. The chunks of the ids are read one after
+     the other, search_after starts again with the first page of every chunk.
+     */
+    private class PointInTimeIterator implements Iterator<TwitterIndexModel> {
+
+        private final Iterator<Collection<String>> idsChunks;
+
+        private Collection<String> ids;
+
+        private final Duration keepAlive = Duration.ofMillis(elasticQueryConfigData.getPointInTimeKeepAliveMs());
+
+        private final int pageSize = elasticQueryConfigData.getStreamPageSize();
+
+        private String pointInTimeId;
+
+        private Iterator<SearchHit<TwitterIndexModel>> page = Collections.emptyIterator();
+
+        private List<Object> searchAfter;
+
+        private boolean lastPage;
+
+        private long documentCount;
+
+        private PointInTimeIterator(List<Collection<String>> chunks) {
+            this.idsChunks = chunks.iterator();
+            this.ids = idsChunks.next();
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!page.hasNext() && !lastPage) {
+                readNextPage();
+            }
+            return page.hasNext();
+        }
+
+        @Override
+        public TwitterIndexModel next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            documentCount++;
+            return page.next().getContent();
+        }
+
+        private void readNextPage() {
+            if (pointInTimeId == null) {
+                pointInTimeId = elasticsearchOperations.openPointInTime(
+                        IndexCoordinates.of(elasticConfigData.getIndexName()), keepAlive);
+            }
+            Query query = elasticQueryUtil.getSearchQueryForAllInPointInTime(pointInTimeId, keepAlive, pageSize,
+                    searchAfter, ids);
+            SearchHits<TwitterIndexModel> searchHits = elasticsearchOperations.search(query, TwitterIndexModel.class,
+                    IndexCoordinates.of(elasticConfigData.getIndexName()));
+            // Elasticsearch can return a new id for the point in time with every page
+            if (searchHits.getPointInTimeId() != null) {
+                pointInTimeId = searchHits.getPointInTimeId();
+            }
+            List<SearchHit<TwitterIndexModel>> hits = searchHits.getSearchHits();
+            page = hits.iterator();
+            if (hits.size() == pageSize) {
+                searchAfter = hits.get(hits.size() - 1).getSortValues();
+            } else if (idsChunks.hasNext()) {
+                ids = idsChunks.next();
+                searchAfter = null;
+            } else {
+                lastPage = true;
+                close();
+            }
+        }
+
+        private void close() {
+            if (pointInTimeId != null) {
+                elasticsearchOperations.closePointInTime(pointInTimeId);
+                LOG.info("{} number of documents streamed successfully", documentCount);
+                pointInTimeId = null;
+            }
+        }
+    }
 }
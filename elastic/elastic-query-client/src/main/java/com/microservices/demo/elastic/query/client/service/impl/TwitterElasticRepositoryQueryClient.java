@@ -1,31 +1,46 @@
 package com.microservices.demo.elastic.query.client.service.impl;
 
 import com.microservices.demo.common.util.CollectionsUtil;
+import com.microservices.demo.config.ElasticConfigData;
 import com.microservices.demo.elastic.model.index.impl.TwitterIndexModel;
 import com.microservices.demo.elastic.query.client.exception.ElasticQueryClientException;
 import com.microservices.demo.elastic.query.client.repository.TwitterElasticsearchQueryRepository;
 import com.microservices.demo.elastic.query.client.service.ElasticQueryClient;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.context.annotation.Primary;
 import org.springframework.stereotype.Service;
 
+import java.time.ZonedDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Stream;
 
-@Primary
 @Service
 public class TwitterElasticRepositoryQueryClient implements ElasticQueryClient<TwitterIndexModel> {
     private static final Logger LOG = LoggerFactory.getLogger(TwitterElasticRepositoryQueryClient.class);
 
     private final TwitterElasticsearchQueryRepository twitterElasticsearchQueryRepository;
 
-    public TwitterElasticRepositoryQueryClient(TwitterElasticsearchQueryRepository repository) {
+    private final TwitterElasticQueryClient twitterElasticQueryClient;
+
+    private final ElasticConfigData elasticConfigData;
+
+    public TwitterElasticRepositoryQueryClient(TwitterElasticsearchQueryRepository repository,
+                                               TwitterElasticQueryClient elasticQueryClient,
+                                               ElasticConfigData configData) {
         this.twitterElasticsearchQueryRepository = repository;
+        this.twitterElasticQueryClient = elasticQueryClient;
+        this.elasticConfigData = configData;
     }
 
     @Override
     public TwitterIndexModel getIndexModelById(String id) {
+        if (Boolean.TRUE.equals(elasticConfigData.getRoutingByUserId())) {
+            // A get by id goes to the shard of the id, documents routed by userId are found with an ids search
+            return twitterElasticQueryClient.getIndexModelById(id);
+        }
         Optional<TwitterIndexModel> searchResult = twitterElasticsearchQueryRepository.findById(id);
         LOG.info("Document with id {} retrieved successfully",
                 searchResult.orElseThrow(() ->
@@ -33,6 +48,12 @@ public class TwitterElasticRepositoryQueryClient implements ElasticQueryClient<T
         return searchResult.get();
     }
 
+    // findAllById sends a multi get without the failures of the items
+    @Override
+    public List<TwitterIndexModel> getIndexModelsByIds(Collection<String> ids) {
+        return twitterElasticQueryClient.getIndexModelsByIds(ids);
+    }
+
     @Override
     public List<TwitterIndexModel> getIndexModelByText(String text) {
         List<TwitterIndexModel> searchResult = twitterElasticsearchQueryRepository.findByText(text);
@@ -40,6 +61,34 @@ public class TwitterElasticRepositoryQueryClient implements ElasticQueryClient<T
         return searchResult;
     }
 
+    // The repository queries can not be combined with an ids filter
+    @Override
+    public List<TwitterIndexModel> getIndexModelByText(String text, Collection<String> ids) {
+        return ids == null ? getIndexModelByText(text) : twitterElasticQueryClient.getIndexModelByText(text, ids);
+    }
+
+    // The repository has no multi search
+    @Override
+    public Map<String, List<TwitterIndexModel>> getIndexModelsByTexts(List<String> texts, Collection<String> ids) {
+        return twitterElasticQueryClient.getIndexModelsByTexts(texts, ids);
+    }
+
+    // The repository always searches the index of the @Document, the operations client can target single indices
+    @Override
+    public List<TwitterIndexModel> getIndexModelByTextAndTimeRange(String text, ZonedDateTime from, ZonedDateTime to) {
+        return twitterElasticQueryClient.getIndexModelByTextAndTimeRange(text, from, to);
+    }
+
+    @Override
+    public List<TwitterIndexModel> getIndexModelByUserId(Long userId) {
+        return twitterElasticQueryClient.getIndexModelByUserId(userId);
+    }
+
+    @Override
+    public List<TwitterIndexModel> getIndexModelByUserId(Long userId, Collection<String> ids) {
+        return twitterElasticQueryClient.getIndexModelByUserId(userId, ids);
+    }
+
     @Override
     public List<TwitterIndexModel> getAllIndexModels() {
         List<TwitterIndexModel> searchResult =
@@ -47,4 +96,39 @@ public class TwitterElasticRepositoryQueryClient implements ElasticQueryClient<T
         LOG.info("{} number of documents retrieved successfully", searchResult.size());
         return searchResult;
     }
+
+    @Override
+    public List<TwitterIndexModel> getAllIndexModels(Collection<String> ids) {
+        return ids == null ? getAllIndexModels() : twitterElasticQueryClient.getAllIndexModels(ids);
+    }
+
+    // The repository has no aggregations
+    @Override
+    public Map<String, Long> getTextTermCounts(ZonedDateTime from, ZonedDateTime to, int size,
+                                               Collection<String> ids) {
+        return twitterElasticQueryClient.getTextTermCounts(from, to, size, ids);
+    }
+
+    @Override
+    public Map<String, Long> getDocumentCountsByInterval(String text, ZonedDateTime from, ZonedDateTime to,
+                                                         String interval, Collection<String> ids) {
+        return twitterElasticQueryClient.getDocumentCountsByInterval(text, from, to, interval, ids);
+    }
+
+    @Override
+    public Map<String, Long> getDocumentCountsByUserId(ZonedDateTime from, ZonedDateTime to, int size,
+                                                       Collection<String> ids) {
+        return twitterElasticQueryClient.getDocumentCountsByUserId(from, to, size, ids);
+    }
+
+    // The repository pages with from / size, which is limited by max_result_window
+    @Override
+    public Stream<TwitterIndexModel> streamAllIndexModels() {
+        return twitterElasticQueryClient.streamAllIndexModels();
+    }
+
+    @Override
+    public Stream<TwitterIndexModel> streamAllIndexModels(Collection<String> ids) {
+        return twitterElasticQueryClient.streamAllIndexModels(ids);
+    }
 }
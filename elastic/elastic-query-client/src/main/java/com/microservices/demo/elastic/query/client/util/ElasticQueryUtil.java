@@ -1,31 +1,179 @@
 package com.microservices.demo.elastic.query.client.util;
 
+import co.elastic.clients.elasticsearch._types.Time;
+import co.elastic.clients.elasticsearch._types.aggregations.Aggregation;
+import co.elastic.clients.elasticsearch._types.query_dsl.IdsQuery;
+import co.elastic.clients.elasticsearch._types.query_dsl.RangeQuery;
+import co.elastic.clients.json.JsonData;
 import com.microservices.demo.elastic.model.index.IndexModel;
 import org.springframework.data.elasticsearch.client.elc.NativeQuery;
 import org.springframework.data.elasticsearch.client.elc.Queries;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.elasticsearch.core.query.Query;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 
 @Component
 public class ElasticQueryUtil<T extends IndexModel> {
 
+    // Default index.max_result_window, from + size of a search above it is rejected by elasticsearch
+    private static final int MAX_RESULT_WINDOW = 10000;
+
     public Query getSearchQueryById(String id) {
         return NativeQuery.builder()
                 .withIds(Collections.singleton(id))
                 .build();
     }
 
+    // Used for a multi get, a search ignores the ids of the query
+    public Query getSearchQueryByIds(Collection<String> ids) {
+        return NativeQuery.builder()
+                .withIds(ids)
+                .build();
+    }
+
     public Query getSearchQueryByFieldText(String field, String text) {
         return NativeQuery.builder()
                 .withQuery(Queries.matchQueryAsQuery(field, text, null, null))
                 .build();
     }
 
+    // ids restricts the matches to these document ids in a non scoring filter, null matches all documents
+    public Query getSearchQueryByFieldText(String field, String text, Collection<String> ids) {
+        if (ids == null) {
+            return getSearchQueryByFieldText(field, text);
+        }
+        return NativeQuery.builder()
+                .withQuery(q -> q.bool(b -> b
+                        .must(Queries.matchQueryAsQuery(field, text, null, null))
+                        .filter(f -> f.ids(i -> i.values(List.copyOf(ids))))))
+                .build();
+    }
+
+    public Query getSearchQueryByFieldTextAndTimeRange(String field, String text, String timeField,
+                                                       ZonedDateTime from, ZonedDateTime to) {
+        return NativeQuery.builder()
+                .withQuery(q -> q.bool(b -> b
+                        .must(Queries.matchQueryAsQuery(field, text, null, null))
+                        .filter(f -> f.range(getTimeRangeQuery(timeField, from, to)))))
+                .build();
+    }
+
+    /*
+     The aggregation queries return no hits (size 0), only the buckets that are computed on the shards. text can be
+     null to aggregate all documents of the time range, ids restricts the documents to these ids, null aggregates all.
+     */
+    public Query getAggregationQueryForTermsInTimeRange(String aggregationName, String field, String timeField,
+                                                        ZonedDateTime from, ZonedDateTime to, int size,
+                                                        Collection<String> ids) {
+        return getAggregationQuery(null, null, timeField, from, to, ids, aggregationName,
+                Aggregation.of(a -> a.terms(t -> t.field(field).size(size))));
+    }
+
+    // interval is a fixed interval of elasticsearch, e.g. 30m, 1h or 1d, empty intervals are returned with count 0
+    public Query getAggregationQueryForDateHistogram(String aggregationName, String textField, String text,
+                                                     String timeField, ZonedDateTime from, ZonedDateTime to,
+                                                     String interval, Collection<String> ids) {
+        return getAggregationQuery(textField, text, timeField, from, to, ids, aggregationName,
+                Aggregation.of(a -> a.dateHistogram(d -> d
+                        .field(timeField)
+                        .fixedInterval(Time.of(t -> t.time(interval)))
+                        .minDocCount(0))));
+    }
+
+    private Query getAggregationQuery(String textField, String text, String timeField,
+                                      ZonedDateTime from, ZonedDateTime to, Collection<String> ids,
+                                      String aggregationName, Aggregation aggregation) {
+        return NativeQuery.builder()
+                .withQuery(q -> q.bool(b -> {
+                    if (text != null) {
+                        b.must(Queries.matchQueryAsQuery(textField, text, null, null));
+                    }
+                    if (ids != null) {
+                        b.filter(f -> f.ids(i -> i.values(List.copyOf(ids))));
+                    }
+                    return b.filter(f -> f.range(getTimeRangeQuery(timeField, from, to)));
+                }))
+                .withAggregation(aggregationName, aggregation)
+                .withMaxResults(0)
+                .withTrackTotalHits(false)
+                .build();
+    }
+
+    // from or to can be null for an open range
+    private RangeQuery getTimeRangeQuery(String timeField, ZonedDateTime from, ZonedDateTime to) {
+        return RangeQuery.of(r -> {
+            r.field(timeField).format("epoch_millis");
+            if (from != null) {
+                r.gte(JsonData.of(from.toInstant().toEpochMilli()));
+            }
+            if (to != null) {
+                r.lte(JsonData.of(to.toInstant().toEpochMilli()));
+            }
+            return r;
+        });
+    }
+
+    // routing is the shard routing of the user, null searches all shards
+    public Query getSearchQueryByUserId(String userIdField, Long userId, String routing) {
+        return getSearchQueryByUserId(userIdField, userId, routing, null);
+    }
+
+    public Query getSearchQueryByUserId(String userIdField, Long userId, String routing, Collection<String> ids) {
+        return NativeQuery.builder()
+                .withQuery(q -> q.bool(b -> {
+                    b.must(Queries.termQueryAsQuery(userIdField, String.valueOf(userId)));
+                    if (ids != null) {
+                        b.filter(f -> f.ids(i -> i.values(List.copyOf(ids))));
+                    }
+                    return b;
+                }))
+                .withRoute(routing)
+                .build();
+    }
+
     public Query getSearchQueryForAll() {
+        return getSearchQueryForAll(null);
+    }
+
+    /*
+     ids restricts the documents to these ids in a non scoring filter and returns up to one hit per id, null returns
+     the first page of all documents. The ids of a query are only used by a multi get, a search needs the ids query.
+     The page size is limited to index.max_result_window independently of the number of ids, the query client splits
+     larger id sets into chunks of elastic-query-config.max-ids-filter-size.
+     */
+    public Query getSearchQueryForAll(Collection<String> ids) {
+        if (ids == null) {
+            return NativeQuery.builder()
+                    .withQuery(Queries.matchAllQueryAsQuery())
+                    .build();
+        }
+        return NativeQuery.builder()
+                .withQuery(q -> q.bool(b -> b.filter(f -> f.ids(i -> i.values(List.copyOf(ids))))))
+                .withMaxResults(Math.min(ids.size(), MAX_RESULT_WINDOW))
+                .build();
+    }
+
+    /*
+     A page of all documents in a point in time, searchAfter is the sort values of the last hit of the previous page
+     and null for the first page. _shard_doc is the cheapest sort for a point in time and unique for every document.
+     ids restricts the documents to these ids, null returns all documents.
+     */
+    public Query getSearchQueryForAllInPointInTime(String pointInTimeId, Duration keepAlive, int pageSize,
+                                                   List<Object> searchAfter, Collection<String> ids) {
         return NativeQuery.builder()
-                .withQuery(Queries.matchAllQueryAsQuery())
+                .withQuery(ids == null ? Queries.matchAllQueryAsQuery() :
+                        IdsQuery.of(i -> i.values(List.copyOf(ids)))._toQuery())
+                .withPointInTime(new Query.PointInTime(pointInTimeId, keepAlive))
+                .withSort(Sort.by(Sort.Direction.ASC, "_shard_doc"))
+                .withSearchAfter(searchAfter)
+                .withMaxResults(pageSize)
+                .withTrackTotalHits(false)
                 .build();
     }
 }
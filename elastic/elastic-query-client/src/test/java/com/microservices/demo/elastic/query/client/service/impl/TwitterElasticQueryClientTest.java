@@ -0,0 +1,105 @@
+package com.microservices.demo.elastic.query.client.service.impl;
+
+import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import com.microservices.demo.config.ElasticConfigData;
+import com.microservices.demo.config.ElasticQueryConfigData;
+import com.microservices.demo.elastic.config.index.RollingIndexResolver;
+import com.microservices.demo.elastic.model.index.impl.TwitterIndexModel;
+import com.microservices.demo.elastic.query.client.util.ElasticQueryUtil;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.elasticsearch.client.elc.NativeQuery;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.SearchHits;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class TwitterElasticQueryClientTest {
+
+    private static final String INDEX_NAME = "twitter-index";
+
+    private ElasticConfigData elasticConfigData;
+
+    private ElasticQueryConfigData elasticQueryConfigData;
+
+    private ElasticsearchOperations elasticsearchOperations;
+
+    private TwitterElasticQueryClient twitterElasticQueryClient;
+
+    @BeforeEach
+    public void setUp() {
+        elasticConfigData = new ElasticConfigData();
+        elasticConfigData.setIndexName(INDEX_NAME);
+        elasticQueryConfigData = new ElasticQueryConfigData();
+        elasticsearchOperations = mock(ElasticsearchOperations.class);
+        twitterElasticQueryClient = new TwitterElasticQueryClient(elasticConfigData, elasticQueryConfigData,
+                elasticsearchOperations, new ElasticQueryUtil<>(), mock(RollingIndexResolver.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testGetIndexModelsByIdsWithRoutingSearchesOnlyTheIds() {
+        elasticConfigData.setRoutingByUserId(true);
+        SearchHits<TwitterIndexModel> searchHits = mock(SearchHits.class);
+        when(searchHits.get()).thenReturn(Stream.empty());
+        when(elasticsearchOperations.search(any(NativeQuery.class), eq(TwitterIndexModel.class),
+                any(IndexCoordinates.class))).thenReturn(searchHits);
+
+        twitterElasticQueryClient.getIndexModelsByIds(List.of("1", "2", "3"));
+
+        ArgumentCaptor<NativeQuery> queryCaptor = ArgumentCaptor.forClass(NativeQuery.class);
+        verify(elasticsearchOperations).search(queryCaptor.capture(), eq(TwitterIndexModel.class),
+                any(IndexCoordinates.class));
+        verify(elasticsearchOperations, never()).multiGet(any(), eq(TwitterIndexModel.class),
+                any(IndexCoordinates.class));
+        // The ids of a query are ignored by a search, the ids have to be in an ids query
+        Query query = queryCaptor.getValue().getQuery();
+        assertTrue(query.isBool());
+        assertEquals(List.of("1", "2", "3"), query.bool().filter().get(0).ids().values());
+        assertEquals(3, queryCaptor.getValue().getMaxResults());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testGetIndexModelsByIdsAboveMaxIdsFilterSizeSearchesTheChunks() {
+        elasticConfigData.setRoutingByUserId(true);
+        elasticQueryConfigData.setMaxIdsFilterSize(2);
+        SearchHits<TwitterIndexModel> searchHits = mock(SearchHits.class);
+        when(searchHits.get()).thenAnswer(invocation -> Stream.empty());
+        when(elasticsearchOperations.multiSearch(any(), eq(TwitterIndexModel.class), any(IndexCoordinates.class)))
+                .thenReturn(List.of(searchHits, searchHits));
+
+        twitterElasticQueryClient.getIndexModelsByIds(List.of("1", "2", "3"));
+
+        ArgumentCaptor<List<NativeQuery>> queriesCaptor = ArgumentCaptor.forClass(List.class);
+        verify(elasticsearchOperations).multiSearch(queriesCaptor.capture(), eq(TwitterIndexModel.class),
+                any(IndexCoordinates.class));
+        verify(elasticsearchOperations, never()).search(any(NativeQuery.class), eq(TwitterIndexModel.class),
+                any(IndexCoordinates.class));
+        List<NativeQuery> queries = queriesCaptor.getValue();
+        assertEquals(List.of("1", "2"), queries.get(0).getQuery().bool().filter().get(0).ids().values());
+        assertEquals(List.of("3"), queries.get(1).getQuery().bool().filter().get(0).ids().values());
+        assertEquals(2, queries.get(0).getMaxResults());
+        assertEquals(1, queries.get(1).getMaxResults());
+    }
+
+    @Test
+    public void testGetIndexModelsByIdsWithoutIdsDoesNotQuery() {
+        assertTrue(twitterElasticQueryClient.getIndexModelsByIds(List.of()).isEmpty());
+
+        verify(elasticsearchOperations, never()).search(any(NativeQuery.class), eq(TwitterIndexModel.class),
+                any(IndexCoordinates.class));
+    }
+}
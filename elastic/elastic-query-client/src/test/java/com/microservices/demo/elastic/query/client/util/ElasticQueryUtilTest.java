@@ -0,0 +1,108 @@
+package com.microservices.demo.elastic.query.client.util;
+
+import co.elastic.clients.elasticsearch._types.query_dsl.BoolQuery;
+import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import com.microservices.demo.elastic.model.index.impl.TwitterIndexModel;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.elasticsearch.client.elc.NativeQuery;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ElasticQueryUtilTest {
+
+    private static final List<String> IDS = List.of("1", "2", "3");
+
+    private final ElasticQueryUtil<TwitterIndexModel> elasticQueryUtil = new ElasticQueryUtil<>();
+
+    @Test
+    public void testSearchQueryForAllWithoutIdsMatchesAll() {
+        NativeQuery query = (NativeQuery) elasticQueryUtil.getSearchQueryForAll(null);
+
+        assertTrue(query.getQuery().isMatchAll());
+    }
+
+    // A search ignores the ids of a query, they have to be in an ids query or the search runs as match_all
+    @Test
+    public void testSearchQueryForAllWithIdsFiltersTheIds() {
+        NativeQuery query = (NativeQuery) elasticQueryUtil.getSearchQueryForAll(IDS);
+
+        assertEquals(IDS, getIdsFilter(query.getQuery().bool()));
+        assertEquals(IDS.size(), query.getMaxResults());
+    }
+
+    // The page size stays within index.max_result_window whatever the number of ids
+    @Test
+    public void testSearchQueryForAllWithManyIdsLimitsTheMaxResults() {
+        List<String> ids = IntStream.range(0, 20000).mapToObj(String::valueOf).toList();
+
+        NativeQuery query = (NativeQuery) elasticQueryUtil.getSearchQueryForAll(ids);
+
+        assertEquals(10000, query.getMaxResults());
+    }
+
+    @Test
+    public void testSearchQueryForAllWithEmptyIdsMatchesNothing() {
+        NativeQuery query = (NativeQuery) elasticQueryUtil.getSearchQueryForAll(List.of());
+
+        assertTrue(getIdsFilter(query.getQuery().bool()).isEmpty());
+        assertEquals(0, query.getMaxResults());
+    }
+
+    @Test
+    public void testSearchQueryByFieldTextWithIdsFiltersTheIds() {
+        NativeQuery query = (NativeQuery) elasticQueryUtil.getSearchQueryByFieldText("text", "test", IDS);
+
+        BoolQuery boolQuery = query.getQuery().bool();
+        assertEquals("text", boolQuery.must().get(0).match().field());
+        assertEquals(IDS, getIdsFilter(boolQuery));
+    }
+
+    @Test
+    public void testSearchQueryByFieldTextWithoutIdsIsNotFiltered() {
+        NativeQuery query = (NativeQuery) elasticQueryUtil.getSearchQueryByFieldText("text", "test", null);
+
+        assertTrue(query.getQuery().isMatch());
+    }
+
+    @Test
+    public void testSearchQueryByUserIdWithIdsFiltersTheIds() {
+        NativeQuery query = (NativeQuery) elasticQueryUtil.getSearchQueryByUserId("userId", 5L, "5", IDS);
+
+        BoolQuery boolQuery = query.getQuery().bool();
+        assertEquals("userId", boolQuery.must().get(0).term().field());
+        assertEquals(IDS, getIdsFilter(boolQuery));
+        assertEquals("5", query.getRoute());
+    }
+
+    @Test
+    public void testAggregationQueryWithIdsFiltersTheIdsAndReturnsNoHits() {
+        NativeQuery query = (NativeQuery) elasticQueryUtil.getAggregationQueryForTermsInTimeRange("counts",
+                "words", "createdAt", ZonedDateTime.now().minusDays(1), ZonedDateTime.now(), 10, IDS);
+
+        assertEquals(IDS, getIdsFilter(query.getQuery().bool()));
+        assertEquals(0, query.getMaxResults());
+        assertTrue(query.getAggregations().get("counts").isTerms());
+    }
+
+    @Test
+    public void testPointInTimeQueryWithIdsFiltersTheIds() {
+        NativeQuery query = (NativeQuery) elasticQueryUtil.getSearchQueryForAllInPointInTime("pit",
+                Duration.ofMinutes(1), 100, null, IDS);
+
+        assertEquals(IDS, query.getQuery().ids().values());
+    }
+
+    private List<String> getIdsFilter(BoolQuery boolQuery) {
+        return boolQuery.filter().stream()
+                .filter(Query::isIds)
+                .findFirst()
+                .map(filter -> filter.ids().values())
+                .orElseThrow(() -> new AssertionError("No ids filter in " + boolQuery));
+    }
+}
@@ -23,8 +23,7 @@ public class KafkaStreamsInitializer implements StreamsInitializer {
 
     @Override
     public void init() {
-        kafkaAdminClient.checkTopicsCreated();
-        kafkaAdminClient.checkSchemaRegistry();
+        kafkaAdminClient.checkReadiness();
         LOG.info("Topics with name {} is ready for operations!", kafkaConfigData.getTopicNamesToCreate().toArray());
     }
 }
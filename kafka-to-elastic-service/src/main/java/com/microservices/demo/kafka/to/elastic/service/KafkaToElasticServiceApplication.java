@@ -1,14 +1,21 @@
 package com.microservices.demo.kafka.to.elastic.service;
 
+import com.microservices.demo.kafka.to.elastic.service.backfill.TwitterBackfillJob;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.ConfigurableApplicationContext;
 import org.springframework.context.annotation.ComponentScan;
 
 @SpringBootApplication
 @ComponentScan(basePackages = "com.microservices.demo")
 public class KafkaToElasticServiceApplication {
     public static void main(String[] args) {
-        SpringApplication.run(KafkaToElasticServiceApplication.class, args);
+        ConfigurableApplicationContext context = SpringApplication.run(KafkaToElasticServiceApplication.class, args);
+        // In backfill mode the job has run when run returns, the exit code is taken from the job
+        TwitterBackfillJob backfillJob = context.getBeanProvider(TwitterBackfillJob.class).getIfAvailable();
+        if (backfillJob != null && backfillJob.isExitOnCompletion()) {
+            System.exit(SpringApplication.exit(context));
+        }
     }
 }
 
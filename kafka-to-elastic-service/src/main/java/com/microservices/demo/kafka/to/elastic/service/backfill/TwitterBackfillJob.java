@@ -0,0 +1,394 @@
+package com.microservices.demo.kafka.to.elastic.service.backfill;
+
+import com.microservices.demo.config.ElasticConfigData;
+import com.microservices.demo.config.KafkaConfigData;
+import com.microservices.demo.config.KafkaToElasticServiceConfigData;
+import com.microservices.demo.elastic.config.index.ElasticBulkLoadModeManager;
+import com.microservices.demo.elastic.config.index.ElasticIndexAliasManager;
+import com.microservices.demo.kafka.admin.client.KafkaAdminClient;
+import com.microservices.demo.kafka.avro.model.TwitterAvroModel;
+import com.microservices.demo.kafka.to.elastic.service.indexer.TwitterNdjsonBulkIndexer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndTimestamp;
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.ExitCodeGenerator;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/*
+ Backfill / reindex mode of the service (kafka-to-elastic-service.backfill.enabled), it replaces the live consumer
+ group to rebuild the twitter index from the topic:
+
+ (1) The start and end offset of every partition are resolved once, from from-time / to-time (offsets for times) or
+     from-offset / to-offset, the beginning and the current end of the partitions otherwise. The end offsets are
+     exclusive, records produced after the job started are left to the live consumer.
+ (2) The partitions are spread over parallelism workers. Each worker assigns its partitions directly to a consumer
+     without group id, so there is no rebalance and no offset is committed, seeks to the start offsets and sends the
+     records through the NDJSON bulk indexer into the target index, which is in bulk load mode during the job.
+ (3) A worker stops with a partition once its position reached the end offset, and stops when all its partitions are
+     done. When all workers are done, the target index leaves the bulk load mode.
+ (4) With switch-aliases, the live indexing is cut over to the target index. The live consumer group, run by the
+     instances of the service that are not in backfill mode, keeps indexing through the write alias while the job
+     runs. The cut-over keeps every record visible in this order:
+     a. The write alias is moved to the target index, the live consumer writes into it from its next bulk request.
+     b. The records from the end offsets of (1) to the end of the partitions after the move, which the live consumer
+        indexed into the previous write index meanwhile, are indexed into the target index as well. A record that the
+        live consumer writes too has the same external version and is skipped as a version conflict.
+     c. The read alias is moved from its current indices to the target index in one atomic alias update.
+     Between a. and c. the searches still read the previous indices, which miss the records written after a. for
+     that short time. If b. fails, the read alias is not moved, the job can be run again with the same target-index.
+     The cut-over needs the live service to index through the write alias (elastic-config.rolling-index) and the
+     query services to read through the read alias.
+
+ The job runs as an ApplicationRunner once the context is started. With exit-on-completion the application exits with
+ exit code 0 if the backfill and the cut-over completed and 1 otherwise, see KafkaToElasticServiceApplication.
+ The progress is logged every progress-interval-ms and published as the backfill.records.total,
+ backfill.records.indexed, backfill.progress and backfill.eta.seconds gauges.
+ */
+@Component
+@ConditionalOnExpression("${kafka-to-elastic-service.backfill.enabled:false}")
+public class TwitterBackfillJob implements ApplicationRunner, ExitCodeGenerator {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TwitterBackfillJob.class);
+
+    private static final DateTimeFormatter TARGET_INDEX_DATE_FORMATTER =
+            DateTimeFormatter.ofPattern("yyyy.MM.dd-HH.mm.ss");
+
+    private final KafkaToElasticServiceConfigData.Backfill backfill;
+
+    private final KafkaConfigData kafkaConfigData;
+
+    private final ElasticConfigData elasticConfigData;
+
+    private final KafkaAdminClient kafkaAdminClient;
+
+    private final ConsumerFactory<?, ?> consumerFactory;
+
+    private final TwitterNdjsonBulkIndexer twitterNdjsonBulkIndexer;
+
+    private final ElasticIndexAliasManager elasticIndexAliasManager;
+
+    private final ElasticBulkLoadModeManager elasticBulkLoadModeManager;
+
+    private final AtomicLong totalRecords = new AtomicLong();
+
+    private final AtomicLong indexedRecords = new AtomicLong();
+
+    private volatile long startTimeMs;
+
+    private volatile boolean running = true;
+
+    private volatile int exitCode;
+
+    public TwitterBackfillJob(KafkaToElasticServiceConfigData serviceConfigData,
+                              KafkaConfigData configData,
+                              ElasticConfigData elasticConfig,
+                              KafkaAdminClient adminClient,
+                              ConsumerFactory<?, ?> kafkaConsumerFactory,
+                              TwitterNdjsonBulkIndexer ndjsonBulkIndexer,
+                              ElasticIndexAliasManager indexAliasManager,
+                              ElasticBulkLoadModeManager bulkLoadModeManager,
+                              MeterRegistry meterRegistry) {
+        this.backfill = serviceConfigData.getBackfill();
+        this.kafkaConfigData = configData;
+        this.elasticConfigData = elasticConfig;
+        this.kafkaAdminClient = adminClient;
+        this.consumerFactory = kafkaConsumerFactory;
+        this.twitterNdjsonBulkIndexer = ndjsonBulkIndexer;
+        this.elasticIndexAliasManager = indexAliasManager;
+        this.elasticBulkLoadModeManager = bulkLoadModeManager;
+        Gauge.builder("backfill.records.total", totalRecords, AtomicLong::get).register(meterRegistry);
+        Gauge.builder("backfill.records.indexed", indexedRecords, AtomicLong::get).register(meterRegistry);
+        Gauge.builder("backfill.progress", this, TwitterBackfillJob::getProgress).register(meterRegistry);
+        Gauge.builder("backfill.eta.seconds", this, TwitterBackfillJob::getEtaSeconds).register(meterRegistry);
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        kafkaAdminClient.checkReadiness();
+        exitCode = runBackfill() ? 0 : 1;
+    }
+
+    @Override
+    public int getExitCode() {
+        return exitCode;
+    }
+
+    public boolean isExitOnCompletion() {
+        return Boolean.TRUE.equals(backfill.getExitOnCompletion());
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+    }
+
+    public boolean runBackfill() {
+        String targetIndex = getTargetIndex();
+        Map<TopicPartition, Long> startOffsets = new HashMap<>();
+        Map<TopicPartition, Long> endOffsets = new HashMap<>();
+        resolveOffsets(startOffsets, endOffsets);
+        totalRecords.set(startOffsets.keySet().stream()
+                .mapToLong(partition -> Math.max(0, endOffsets.get(partition) - startOffsets.get(partition)))
+                .sum());
+        LOG.info("Backfill of {} records from topic {} into index {}, start offsets {}, end offsets {}",
+                totalRecords.get(), kafkaConfigData.getTopicName(), targetIndex, startOffsets, endOffsets);
+
+        elasticIndexAliasManager.createIndex(targetIndex);
+        boolean bulkLoadMode = Boolean.TRUE.equals(backfill.getBulkLoadMode());
+        if (bulkLoadMode) {
+            elasticBulkLoadModeManager.enableBulkLoadMode(targetIndex);
+        }
+        boolean completed = false;
+        try {
+            completed = runWorkers(targetIndex, startOffsets, endOffsets);
+        } finally {
+            if (bulkLoadMode) {
+                elasticBulkLoadModeManager.disableBulkLoadMode(targetIndex);
+            }
+        }
+        if (!completed) {
+            LOG.error("Backfill into index {} did not complete, {} of {} records indexed, aliases are not " +
+                    "switched", targetIndex, indexedRecords.get(), totalRecords.get());
+            return false;
+        }
+        if (Boolean.TRUE.equals(backfill.getSwitchAliases()) && !switchAliases(targetIndex, endOffsets)) {
+            return false;
+        }
+        LOG.info("Backfill into index {} completed, {} records indexed in {} s", targetIndex, indexedRecords.get(),
+                (System.currentTimeMillis() - startTimeMs) / 1000);
+        return true;
+    }
+
+    // The cut-over of (4)
+    private boolean switchAliases(String targetIndex, Map<TopicPartition, Long> endOffsets) {
+        if (elasticIndexAliasManager.getAliasIndices(backfill.getWriteAlias()).isEmpty()) {
+            LOG.error("Aliases are not switched to index {}, the live indexing does not write through write alias {}",
+                    targetIndex, backfill.getWriteAlias());
+            return false;
+        }
+        elasticIndexAliasManager.switchWriteAlias(backfill.getWriteAlias(), targetIndex);
+        Map<TopicPartition, Long> latestOffsets = getLatestOffsets(endOffsets.keySet());
+        totalRecords.addAndGet(endOffsets.keySet().stream()
+                .mapToLong(partition -> Math.max(0, latestOffsets.get(partition) - endOffsets.get(partition)))
+                .sum());
+        LOG.info("Write alias {} switched to index {}, indexing the records from offsets {} to {}",
+                backfill.getWriteAlias(), targetIndex, endOffsets, latestOffsets);
+        if (!runWorkers(targetIndex, endOffsets, latestOffsets)) {
+            LOG.error("Records after the end offsets could not be indexed into index {}, read alias {} is not " +
+                    "switched, run the backfill into the same target-index again", targetIndex,
+                    backfill.getReadAlias());
+            return false;
+        }
+        elasticIndexAliasManager.switchAlias(backfill.getReadAlias(), targetIndex);
+        return true;
+    }
+
+    private boolean runWorkers(String targetIndex,
+                               Map<TopicPartition, Long> startOffsets,
+                               Map<TopicPartition, Long> endOffsets) {
+        List<List<TopicPartition>> workerPartitions = getWorkerPartitions(startOffsets, endOffsets);
+        AtomicInteger workerNumber = new AtomicInteger();
+        ExecutorService executorService = Executors.newFixedThreadPool(Math.max(1, workerPartitions.size()),
+                runnable -> new Thread(runnable, "backfill-worker-" + workerNumber.incrementAndGet()));
+        startTimeMs = System.currentTimeMillis();
+        try {
+            CompletableFuture<?>[] workers = workerPartitions.stream()
+                    .map(partitions -> CompletableFuture.runAsync(() ->
+                            runWorker(targetIndex, partitions, startOffsets, endOffsets), executorService))
+                    .toArray(CompletableFuture[]::new);
+            CompletableFuture<Void> allWorkers = CompletableFuture.allOf(workers);
+            while (true) {
+                try {
+                    allWorkers.get(backfill.getProgressIntervalMs(), TimeUnit.MILLISECONDS);
+                    return running;
+                } catch (TimeoutException e) {
+                    LOG.info("Backfill progress: {} of {} records indexed ({} %), ETA {} s", indexedRecords.get(),
+                            totalRecords.get(), Math.round(getProgress() * 100), Math.round(getEtaSeconds()));
+                }
+            }
+        } catch (ExecutionException e) {
+            // Stops the other workers, the records they indexed stay in the target index
+            running = false;
+            LOG.error("Backfill worker failed", e.getCause());
+            return false;
+        } catch (InterruptedException e) {
+            running = false;
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    private void runWorker(String targetIndex,
+                           List<TopicPartition> partitions,
+                           Map<TopicPartition, Long> startOffsets,
+                           Map<TopicPartition, Long> endOffsets) {
+        try (Consumer<Long, TwitterAvroModel> consumer = createConsumer()) {
+            consumer.assign(partitions);
+            partitions.forEach(partition -> consumer.seek(partition, startOffsets.get(partition)));
+            Set<TopicPartition> remainingPartitions = new HashSet<>(partitions);
+            while (running && !remainingPartitions.isEmpty()) {
+                ConsumerRecords<Long, TwitterAvroModel> records =
+                        consumer.poll(Duration.ofMillis(backfill.getPollTimeoutMs()));
+                List<TwitterAvroModel> messages = new ArrayList<>(records.count());
+                List<Long> offsets = new ArrayList<>(records.count());
+                for (TopicPartition partition : records.partitions()) {
+                    long endOffset = endOffsets.get(partition);
+                    for (ConsumerRecord<Long, TwitterAvroModel> record : records.records(partition)) {
+                        if (record.offset() < endOffset && record.value() != null) {
+                            messages.add(record.value());
+                            offsets.add(record.offset());
+                        }
+                    }
+                }
+                if (!messages.isEmpty()) {
+                    twitterNdjsonBulkIndexer.index(messages, offsets, targetIndex);
+                    indexedRecords.addAndGet(messages.size());
+                }
+                // The position is compared instead of the last record offset, compaction and transaction markers
+                // can leave the last offsets of a range without a record
+                List<TopicPartition> donePartitions = remainingPartitions.stream()
+                        .filter(partition -> consumer.position(partition) >= endOffsets.get(partition))
+                        .collect(Collectors.toList());
+                if (!donePartitions.isEmpty()) {
+                    consumer.pause(donePartitions);
+                    donePartitions.forEach(remainingPartitions::remove);
+                    LOG.info("Backfill of partitions {} completed", donePartitions);
+                }
+            }
+        }
+    }
+
+    // A consumer without group id, the partitions are assigned and no offsets are committed
+    private Consumer<Long, TwitterAvroModel> createConsumer() {
+        Map<String, Object> props = new HashMap<>(consumerFactory.getConfigurationProperties());
+        props.remove(ConsumerConfig.GROUP_ID_CONFIG);
+        props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        return new KafkaConsumer<>(props);
+    }
+
+    private void resolveOffsets(Map<TopicPartition, Long> startOffsets, Map<TopicPartition, Long> endOffsets) {
+        try (Consumer<Long, TwitterAvroModel> consumer = createConsumer()) {
+            List<TopicPartition> partitions = consumer.partitionsFor(kafkaConfigData.getTopicName()).stream()
+                    .map(partitionInfo -> new TopicPartition(partitionInfo.topic(), partitionInfo.partition()))
+                    .collect(Collectors.toList());
+            Map<TopicPartition, Long> beginningOffsets = consumer.beginningOffsets(partitions);
+            Map<TopicPartition, Long> latestOffsets = consumer.endOffsets(partitions);
+            Map<TopicPartition, Long> fromTimeOffsets = getOffsetsForTime(consumer, partitions, backfill.getFromTime());
+            Map<TopicPartition, Long> toTimeOffsets = getOffsetsForTime(consumer, partitions, backfill.getToTime());
+            for (TopicPartition partition : partitions) {
+                long beginning = beginningOffsets.get(partition);
+                long latest = latestOffsets.get(partition);
+                long start = fromTimeOffsets != null ? fromTimeOffsets.getOrDefault(partition, latest) :
+                        backfill.getFromOffset() != null ? backfill.getFromOffset() : beginning;
+                long end = toTimeOffsets != null ? toTimeOffsets.getOrDefault(partition, latest) :
+                        backfill.getToOffset() != null ? backfill.getToOffset() : latest;
+                startOffsets.put(partition, Math.min(Math.max(start, beginning), latest));
+                endOffsets.put(partition, Math.min(Math.max(end, beginning), latest));
+            }
+        }
+    }
+
+    private Map<TopicPartition, Long> getLatestOffsets(Collection<TopicPartition> partitions) {
+        try (Consumer<Long, TwitterAvroModel> consumer = createConsumer()) {
+            return consumer.endOffsets(partitions);
+        }
+    }
+
+    // The first offset with a timestamp at or after the time, partitions without such a record are left out
+    private Map<TopicPartition, Long> getOffsetsForTime(Consumer<Long, TwitterAvroModel> consumer,
+                                                        List<TopicPartition> partitions,
+                                                        String time) {
+        if (time == null || time.isBlank()) {
+            return null;
+        }
+        long timestamp = Instant.parse(time).toEpochMilli();
+        Map<TopicPartition, OffsetAndTimestamp> offsetsForTimes = consumer.offsetsForTimes(
+                partitions.stream().collect(Collectors.toMap(partition -> partition, partition -> timestamp)));
+        Map<TopicPartition, Long> offsets = new HashMap<>();
+        offsetsForTimes.forEach((partition, offsetAndTimestamp) -> {
+            if (offsetAndTimestamp != null) {
+                offsets.put(partition, offsetAndTimestamp.offset());
+            }
+        });
+        return offsets;
+    }
+
+    // Round robin over the partitions that have records in the range
+    private List<List<TopicPartition>> getWorkerPartitions(Map<TopicPartition, Long> startOffsets,
+                                                           Map<TopicPartition, Long> endOffsets) {
+        List<TopicPartition> partitions = startOffsets.keySet().stream()
+                .filter(partition -> startOffsets.get(partition) < endOffsets.get(partition))
+                .collect(Collectors.toList());
+        int workers = Math.min(backfill.getParallelism(), partitions.size());
+        List<List<TopicPartition>> workerPartitions = new ArrayList<>();
+        for (int i = 0; i < workers; i++) {
+            workerPartitions.add(new ArrayList<>());
+        }
+        for (int i = 0; i < partitions.size(); i++) {
+            workerPartitions.get(i % workers).add(partitions.get(i));
+        }
+        return workerPartitions;
+    }
+
+    private String getTargetIndex() {
+        if (backfill.getTargetIndex() != null && !backfill.getTargetIndex().isBlank()) {
+            return backfill.getTargetIndex();
+        }
+        ElasticConfigData.RollingIndex rollingIndex = elasticConfigData.getRollingIndex();
+        String prefix = rollingIndex != null && Boolean.TRUE.equals(rollingIndex.getEnabled()) ?
+                rollingIndex.getIndexPrefix() : elasticConfigData.getIndexName();
+        return prefix + "-backfill-" +
+                TARGET_INDEX_DATE_FORMATTER.format(LocalDateTime.ofInstant(Instant.now(), ZoneOffset.UTC));
+    }
+
+    private double getProgress() {
+        long total = totalRecords.get();
+        return total == 0 ? 0 : (double) indexedRecords.get() / total;
+    }
+
+    private double getEtaSeconds() {
+        long indexed = indexedRecords.get();
+        if (startTimeMs == 0 || indexed == 0) {
+            return Double.NaN;
+        }
+        double recordsPerSecond = indexed * 1000.0 / Math.max(1, System.currentTimeMillis() - startTimeMs);
+        return Math.max(0, totalRecords.get() - indexed) / recordsPerSecond;
+    }
+}
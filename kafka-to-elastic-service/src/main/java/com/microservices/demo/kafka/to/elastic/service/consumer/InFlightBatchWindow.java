@@ -0,0 +1,267 @@
+package com.microservices.demo.kafka.to.elastic.service.consumer;
+
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.kafka.support.Acknowledgment;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/*
+ Tracks the batches of a batch listener that are indexed asynchronously, so the listener returns to the poll loop
+ right after it started indexing a batch.
+
+ (1) The acknowledgment of a batch is called only when the batch and all batches received before it on the same
+     partitions are indexed. The committed offset of a partition therefore never passes a record that is not indexed
+     yet, although the batches complete in any order.
+ (2) At most max-in-flight-batches batches per partition are indexed at the same time. A partition that reaches the
+     limit is paused and resumed when one of its batches is acknowledged.
+ (3) When a batch fails, the batch and every batch received after it on the same partitions are dropped without
+     acknowledgment. The partitions are sought back to the first dropped offset and paused for back-off-ms, then the
+     records are polled and indexed again.
+ (4) A seek is performed by the consumer before its next poll, so a batch can still arrive that was polled before the
+     seek. It starts after the seek offset of a partition, it is dropped as well and its partitions are sought back to
+     its first offsets. The first batch that starts at the seek offset ends the seek of the partition.
+ (5) The batches of revoked partitions are dropped, the new owner of the partition reads them again from the
+     committed offset.
+ All methods are called by the consumer threads of the container and by the threads completing the index futures.
+ The pause and resume requests are sent to the container after the lock of the window is released, since the
+ container takes its own lock for them.
+ */
+public class InFlightBatchWindow {
+
+    private static final Logger LOG = LoggerFactory.getLogger(InFlightBatchWindow.class);
+
+    private final int maxInFlightBatches;
+
+    private final long backOffMs;
+
+    private final PartitionControl partitionControl;
+
+    private final ScheduledExecutorService scheduledExecutorService;
+
+    private final Map<TopicPartition, Deque<InFlightBatch>> partitionBatches = new HashMap<>();
+
+    private final Map<TopicPartition, Long> seekOffsets = new HashMap<>();
+
+    private final Set<TopicPartition> backingOffPartitions = new HashSet<>();
+
+    public InFlightBatchWindow(int maxBatches,
+                               long backOff,
+                               PartitionControl control,
+                               ScheduledExecutorService executorService) {
+        this.maxInFlightBatches = maxBatches;
+        this.backOffMs = backOff;
+        this.partitionControl = control;
+        this.scheduledExecutorService = executorService;
+    }
+
+    /*
+     Starts indexing the batch, the acknowledgment is called once the batch is committable. firstOffsets holds the
+     first offset of every partition of the batch. Returns false if the batch was dropped because it was polled before
+     a pending seek, the index function is not called then.
+     */
+    public boolean index(Map<TopicPartition, Long> firstOffsets,
+                         Acknowledgment acknowledgment,
+                         Supplier<CompletableFuture<?>> indexFunction) {
+        InFlightBatch batch = new InFlightBatch(firstOffsets, acknowledgment);
+        List<Runnable> partitionRequests = new ArrayList<>();
+        boolean added = add(batch, partitionRequests);
+        partitionRequests.forEach(Runnable::run);
+        if (!added) {
+            return false;
+        }
+        CompletableFuture<?> indexFuture;
+        try {
+            indexFuture = indexFunction.get();
+        } catch (RuntimeException e) {
+            indexFuture = CompletableFuture.failedFuture(e);
+        }
+        indexFuture.whenComplete((result, failure) -> complete(batch, failure));
+        return true;
+    }
+
+    public void revoke(Collection<TopicPartition> partitions) {
+        List<Runnable> partitionRequests = new ArrayList<>();
+        dropRevoked(partitions, partitionRequests);
+        partitionRequests.forEach(Runnable::run);
+    }
+
+    public synchronized void assign(Collection<TopicPartition> partitions) {
+        // An assigned partition starts at its committed offset, a seek requested before the rebalance is obsolete
+        partitions.forEach(seekOffsets::remove);
+    }
+
+    private synchronized void dropRevoked(Collection<TopicPartition> partitions, List<Runnable> partitionRequests) {
+        List<InFlightBatch> revokedBatches = new ArrayList<>();
+        partitions.forEach(partition -> {
+            Deque<InFlightBatch> batches = partitionBatches.get(partition);
+            if (batches != null && !batches.isEmpty()) {
+                revokedBatches.add(batches.peekFirst());
+            }
+        });
+        Map<TopicPartition, Long> droppedOffsets = drop(revokedBatches);
+        partitions.forEach(partition -> {
+            droppedOffsets.remove(partition);
+            partitionBatches.remove(partition);
+            seekOffsets.remove(partition);
+            backingOffPartitions.remove(partition);
+            partitionRequests.add(() -> partitionControl.resume(partition));
+        });
+        // Batches of partitions that are kept were dropped with a revoked partition, they are read again
+        droppedOffsets.forEach((partition, offset) -> {
+            seek(partition, offset);
+            if (!backingOffPartitions.contains(partition)) {
+                partitionRequests.add(() -> partitionControl.resume(partition));
+            }
+        });
+    }
+
+    private synchronized boolean add(InFlightBatch batch, List<Runnable> partitionRequests) {
+        boolean polledBeforeSeek = batch.firstOffsets.entrySet().stream()
+                .anyMatch(entry -> seekOffsets.containsKey(entry.getKey()) &&
+                        entry.getValue() > seekOffsets.get(entry.getKey()));
+        if (polledBeforeSeek) {
+            LOG.info("Dropping batch with first offsets {}, it was polled before the seek to {}", batch.firstOffsets,
+                    seekOffsets);
+            batch.firstOffsets.forEach((partition, firstOffset) -> {
+                Long seekOffset = seekOffsets.get(partition);
+                if (seekOffset == null || firstOffset < seekOffset) {
+                    seek(partition, firstOffset);
+                }
+            });
+            return false;
+        }
+        batch.firstOffsets.keySet().forEach(partition -> {
+            seekOffsets.remove(partition);
+            Deque<InFlightBatch> batches = partitionBatches.computeIfAbsent(partition, key -> new ArrayDeque<>());
+            batches.addLast(batch);
+            if (batches.size() >= maxInFlightBatches) {
+                partitionRequests.add(() -> partitionControl.pause(partition));
+            }
+        });
+        return true;
+    }
+
+    private void complete(InFlightBatch batch, Throwable failure) {
+        List<Runnable> partitionRequests = new ArrayList<>();
+        complete(batch, failure, partitionRequests);
+        partitionRequests.forEach(Runnable::run);
+    }
+
+    private synchronized void complete(InFlightBatch batch, Throwable failure, List<Runnable> partitionRequests) {
+        if (batch.dropped) {
+            return;
+        }
+        batch.done = true;
+        batch.failure = failure;
+        Deque<TopicPartition> partitions = new ArrayDeque<>(batch.firstOffsets.keySet());
+        while (!partitions.isEmpty()) {
+            Deque<InFlightBatch> batches = partitionBatches.get(partitions.pollFirst());
+            InFlightBatch head = batches == null ? null : batches.peekFirst();
+            if (head == null || !head.done || !isHeadOfAllPartitions(head)) {
+                continue;
+            }
+            if (head.failure == null) {
+                head.firstOffsets.keySet().forEach(partition -> removeHead(partition, head, partitionRequests));
+                head.acknowledgment.acknowledge();
+                partitions.addAll(head.firstOffsets.keySet());
+            } else {
+                LOG.error("Batch with first offsets {} could not be indexed, seeking back and retrying in {} ms",
+                        head.firstOffsets, backOffMs, head.failure);
+                drop(List.of(head)).forEach((partition, offset) -> {
+                    seek(partition, offset);
+                    backOff(partition, partitionRequests);
+                });
+            }
+        }
+    }
+
+    private boolean isHeadOfAllPartitions(InFlightBatch batch) {
+        return batch.firstOffsets.keySet().stream()
+                .allMatch(partition -> partitionBatches.get(partition).peekFirst() == batch);
+    }
+
+    // Drops the batches and every batch after them on their partitions, returns the first dropped offset per partition
+    private Map<TopicPartition, Long> drop(List<InFlightBatch> batches) {
+        Map<TopicPartition, Long> droppedOffsets = new LinkedHashMap<>();
+        Deque<InFlightBatch> toDrop = new ArrayDeque<>(batches);
+        while (!toDrop.isEmpty()) {
+            InFlightBatch batch = toDrop.pollFirst();
+            if (batch.dropped) {
+                continue;
+            }
+            batch.dropped = true;
+            batch.firstOffsets.forEach((partition, firstOffset) -> {
+                droppedOffsets.merge(partition, firstOffset, Math::min);
+                Deque<InFlightBatch> partitionQueue = partitionBatches.get(partition);
+                List<InFlightBatch> remaining = new ArrayList<>(partitionQueue);
+                toDrop.addAll(remaining.subList(remaining.indexOf(batch) + 1, remaining.size()));
+            });
+        }
+        droppedOffsets.keySet().forEach(partition -> partitionBatches.get(partition).removeIf(batch -> batch.dropped));
+        return droppedOffsets;
+    }
+
+    private void removeHead(TopicPartition partition, InFlightBatch batch, List<Runnable> partitionRequests) {
+        Deque<InFlightBatch> batches = partitionBatches.get(partition);
+        batches.remove(batch);
+        if (batches.size() < maxInFlightBatches && !backingOffPartitions.contains(partition)) {
+            partitionRequests.add(() -> partitionControl.resume(partition));
+        }
+    }
+
+    private void seek(TopicPartition partition, long offset) {
+        seekOffsets.put(partition, offset);
+        partitionControl.seek(partition, offset);
+    }
+
+    private void backOff(TopicPartition partition, List<Runnable> partitionRequests) {
+        backingOffPartitions.add(partition);
+        partitionRequests.add(() -> partitionControl.pause(partition));
+        scheduledExecutorService.schedule(() -> {
+            if (endBackOff(partition)) {
+                partitionControl.resume(partition);
+            }
+        }, backOffMs, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized boolean endBackOff(TopicPartition partition) {
+        return backingOffPartitions.remove(partition);
+    }
+
+    // Pauses, resumes and seeks the partitions of the listener container
+    public interface PartitionControl {
+        void pause(TopicPartition partition);
+
+        void resume(TopicPartition partition);
+
+        void seek(TopicPartition partition, long offset);
+    }
+
+    private static class InFlightBatch {
+        private final Map<TopicPartition, Long> firstOffsets;
+        private final Acknowledgment acknowledgment;
+        private boolean done;
+        private boolean dropped;
+        private Throwable failure;
+
+        private InFlightBatch(Map<TopicPartition, Long> firstOffsets, Acknowledgment acknowledgment) {
+            this.firstOffsets = firstOffsets;
+            this.acknowledgment = acknowledgment;
+        }
+    }
+}
@@ -1,29 +1,46 @@
 package com.microservices.demo.kafka.to.elastic.service.consumer.impl;
-import  com.microservices.demo.kafka.consumer.KafkaConsumer;
+
+import com.microservices.demo.config.ElasticConfigData;
 import com.microservices.demo.config.KafkaConfigData;
 import com.microservices.demo.config.KafkaConsumerConfigData;
+import com.microservices.demo.config.KafkaToElasticServiceConfigData;
 import com.microservices.demo.elastic.index.client.service.ElasticIndexClient;
 import com.microservices.demo.elastic.model.index.impl.TwitterIndexModel;
 import com.microservices.demo.kafka.admin.client.KafkaAdminClient;
 import com.microservices.demo.kafka.avro.model.TwitterAvroModel;
+import com.microservices.demo.kafka.to.elastic.service.consumer.InFlightBatchWindow;
+import com.microservices.demo.kafka.to.elastic.service.consumer.KafkaConsumer;
+import com.microservices.demo.kafka.to.elastic.service.indexer.TwitterNdjsonBulkIndexer;
 import com.microservices.demo.kafka.to.elastic.service.transformer.AvroToElasticModelTransformer;
+import jakarta.annotation.PreDestroy;
+import org.apache.kafka.common.TopicPartition;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.boot.context.event.ApplicationStartedEvent;
 import org.springframework.context.event.EventListener;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.AbstractConsumerSeekAware;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.kafka.support.Acknowledgment;
 import org.springframework.kafka.support.KafkaHeaders;
 import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.messaging.handler.annotation.Payload;
 import org.springframework.stereotype.Service;
 
-
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Service
-public class TwitterKafkaConsumer implements KafkaConsumer<TwitterAvroModel> {
+public class TwitterKafkaConsumer extends AbstractConsumerSeekAware implements KafkaConsumer<TwitterAvroModel> {
 
     private static final Logger LOG = LoggerFactory.getLogger(TwitterKafkaConsumer.class);
 
@@ -39,25 +56,65 @@ public class TwitterKafkaConsumer implements KafkaConsumer<TwitterAvroModel> {
 
     private final ElasticIndexClient<TwitterIndexModel> elasticIndexClient;
 
+    private final ElasticConfigData elasticConfigData;
+
+    private final TwitterNdjsonBulkIndexer twitterNdjsonBulkIndexer;
+
+    private final KafkaToElasticServiceConfigData kafkaToElasticServiceConfigData;
+
+    private final ScheduledExecutorService scheduledExecutorService;
+
+    private final ExecutorService ndjsonIndexExecutorService;
+
+    private final InFlightBatchWindow inFlightBatchWindow;
+
     public TwitterKafkaConsumer(KafkaListenerEndpointRegistry listenerEndpointRegistry,
                                 KafkaAdminClient adminClient,
                                 KafkaConfigData configData,
                                 KafkaConsumerConfigData consumerConfigData,
                                 AvroToElasticModelTransformer transformer,
-                                ElasticIndexClient<TwitterIndexModel> indexClient) {
+                                ElasticIndexClient<TwitterIndexModel> indexClient,
+                                ElasticConfigData elasticConfig,
+                                TwitterNdjsonBulkIndexer ndjsonBulkIndexer,
+                                KafkaToElasticServiceConfigData serviceConfigData) {
         this.kafkaListenerEndpointRegistry = listenerEndpointRegistry;
         this.kafkaAdminClient = adminClient;
         this.kafkaConfigData = configData;
         this.kafkaConsumerConfigData = consumerConfigData;
         this.avroToElasticModelTransformer = transformer;
         this.elasticIndexClient = indexClient;
+        this.elasticConfigData = elasticConfig;
+        this.twitterNdjsonBulkIndexer = ndjsonBulkIndexer;
+        this.kafkaToElasticServiceConfigData = serviceConfigData;
+        this.scheduledExecutorService = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "kafka-batch-back-off");
+            thread.setDaemon(true);
+            return thread;
+        });
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.ndjsonIndexExecutorService = Executors.newFixedThreadPool(
+                consumerConfigData.getConcurrencyLevel() * consumerConfigData.getMaxInFlightBatches(), runnable -> {
+                    Thread thread = new Thread(runnable, "ndjson-index-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.inFlightBatchWindow = new InFlightBatchWindow(consumerConfigData.getMaxInFlightBatches(),
+                consumerConfigData.getFailedBatchBackOffMs(), new ContainerPartitionControl(),
+                scheduledExecutorService);
     }
 
      //  This method is called when the application starts
-    // It checks if the Kafka topics are created and starts the listener container
+    // It checks if the Kafka topics and the schema registry are ready and starts the listener container
     @EventListener
     public void onAppStarted(ApplicationStartedEvent event) {
-        kafkaAdminClient.checkTopicsCreated();
+        KafkaToElasticServiceConfigData.Backfill backfill = kafkaToElasticServiceConfigData.getBackfill();
+        if (backfill != null && Boolean.TRUE.equals(backfill.getEnabled())) {
+            // The topic is read by TwitterBackfillJob, the consumer group is not started in backfill mode
+            LOG.info("Backfill mode is enabled, listener container {} is not started",
+                    kafkaConsumerConfigData.getConsumerGroupId());
+            return;
+        }
+        kafkaAdminClient.checkReadiness();
         LOG.info("Topics with name {} is ready for operations!", kafkaConfigData.getTopicNamesToCreate().toArray());
         Objects.requireNonNull(kafkaListenerEndpointRegistry
                 .getListenerContainer(kafkaConsumerConfigData.getConsumerGroupId())).start();
@@ -68,7 +125,8 @@ public class TwitterKafkaConsumer implements KafkaConsumer<TwitterAvroModel> {
     public void receive(@Payload List<TwitterAvroModel> messages,
                         @Header(KafkaHeaders.RECEIVED_KEY) List<Long> keys,
                         @Header(KafkaHeaders.RECEIVED_PARTITION) List<Integer> partitions,
-                        @Header(KafkaHeaders.OFFSET) List<Long> offsets) {
+                        @Header(KafkaHeaders.OFFSET) List<Long> offsets,
+                        Acknowledgment acknowledgment) {
         LOG.info("{} number of message received with keys {}, partitions {} and offsets {}, " +
                         "sending it to elastic: Thread id {}",
                 messages.size(),
@@ -76,8 +134,87 @@ public class TwitterKafkaConsumer implements KafkaConsumer<TwitterAvroModel> {
                 partitions.toString(),
                 offsets.toString(),
                 Thread.currentThread().getId());
-        List<TwitterIndexModel> twitterIndexModels = avroToElasticModelTransformer.getElasticModels(messages);
-        List<String> documentIds = elasticIndexClient.save(twitterIndexModels);
-        LOG.info("Documents saved to elasticsearch with ids {}", documentIds.toArray());
+        // The listener only starts indexing the batch and returns to the poll loop, the window acknowledges the batch
+        // once it and the batches received before it on its partitions are indexed, or seeks back if it failed
+        boolean indexing = inFlightBatchWindow.index(getFirstOffsets(partitions, offsets), acknowledgment,
+                () -> index(messages, offsets));
+        if (!indexing) {
+            LOG.debug("Batch with offsets {} of partitions {} was polled before a seek and is dropped", offsets,
+                    partitions);
+        }
+    }
+
+    @Override
+    public void onPartitionsAssigned(Map<TopicPartition, Long> assignments, ConsumerSeekCallback callback) {
+        super.onPartitionsAssigned(assignments, callback);
+        inFlightBatchWindow.assign(assignments.keySet());
+    }
+
+    @Override
+    public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+        inFlightBatchWindow.revoke(partitions);
+        super.onPartitionsRevoked(partitions);
+    }
+
+    @PreDestroy
+    public void close() {
+        scheduledExecutorService.shutdownNow();
+        ndjsonIndexExecutorService.shutdown();
+    }
+
+    private CompletableFuture<List<String>> index(List<TwitterAvroModel> messages, List<Long> offsets) {
+        CompletableFuture<List<String>> indexFuture;
+        if (Boolean.TRUE.equals(elasticConfigData.getNdjsonBulk().getEnabled())) {
+            // Fast path, the bulk body is written straight from the avro records, on the ndjson index threads since
+            // the bulk requests of the indexer are blocking
+            indexFuture = CompletableFuture.supplyAsync(() -> twitterNdjsonBulkIndexer.index(messages, offsets),
+                    ndjsonIndexExecutorService);
+        } else {
+            // With the BulkIngester index client, the documents of all consumers of the group are batched into shared
+            // bulk requests and the future completes when elasticsearch acknowledged all documents of the batch
+            indexFuture = elasticIndexClient.saveAsync(avroToElasticModelTransformer.getElasticModels(messages,
+                    offsets));
+        }
+        return indexFuture.whenComplete((documentIds, failure) -> {
+            if (failure == null) {
+                LOG.info("Documents saved to elasticsearch with ids {}", documentIds.toArray());
+            }
+        });
+    }
+
+    private Map<TopicPartition, Long> getFirstOffsets(List<Integer> partitions, List<Long> offsets) {
+        Map<TopicPartition, Long> firstOffsets = new LinkedHashMap<>();
+        for (int i = 0; i < partitions.size(); i++) {
+            firstOffsets.merge(new TopicPartition(kafkaConfigData.getTopicName(), partitions.get(i)), offsets.get(i),
+                    Math::min);
+        }
+        return firstOffsets;
+    }
+
+    // Pauses and resumes the partitions on the listener container, seeks on the consumer the partition is assigned to
+    private class ContainerPartitionControl implements InFlightBatchWindow.PartitionControl {
+
+        @Override
+        public void pause(TopicPartition partition) {
+            getListenerContainer().pausePartition(partition);
+        }
+
+        @Override
+        public void resume(TopicPartition partition) {
+            getListenerContainer().resumePartition(partition);
+        }
+
+        @Override
+        public void seek(TopicPartition partition, long offset) {
+            ConsumerSeekCallback seekCallback = getSeekCallbackFor(partition);
+            if (seekCallback != null) {
+                seekCallback.seek(partition.topic(), partition.partition(), offset);
+            }
+        }
+
+        private MessageListenerContainer getListenerContainer() {
+            return Objects.requireNonNull(kafkaListenerEndpointRegistry
+                    .getListenerContainer(kafkaConsumerConfigData.getConsumerGroupId()));
+        }
     }
 }
@@ -0,0 +1,79 @@
+package com.microservices.demo.kafka.to.elastic.service.indexer;
+
+import com.microservices.demo.config.ElasticConfigData;
+import com.microservices.demo.elastic.index.client.service.ElasticNdjsonBulkClient;
+import com.microservices.demo.elastic.index.client.util.ElasticBulkIndexUtil;
+import com.microservices.demo.elastic.model.index.impl.TwitterIndexModel;
+import com.microservices.demo.kafka.avro.model.TwitterAvroModel;
+import com.microservices.demo.kafka.to.elastic.service.transformer.AvroToBulkNdjsonEncoder;
+import org.springframework.data.elasticsearch.BulkFailureException;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/*
+ Indexes the avro records of a batch through the NDJSON fast path (elastic-config.ndjson-bulk.enabled).
+ The records go through ElasticBulkIndexUtil like the documents of the typed path: the batch is split into chunks of
+ max-batch-size records and max-batch-bytes of estimated body, a chunk rejected with 413 is split in two, and records
+ rejected because of a full write queue or a circuit breaker are encoded and sent again with the exponential backoff of
+ elastic-config.bulk-retry. Any other failure fails the batch, so it is not acknowledged.
+ Every chunk is encoded on the thread that sends it, into the bulk buffer of that thread.
+ */
+@Component
+public class TwitterNdjsonBulkIndexer {
+
+    private final ElasticConfigData elasticConfigData;
+
+    private final AvroToBulkNdjsonEncoder avroToBulkNdjsonEncoder;
+
+    private final ElasticNdjsonBulkClient elasticNdjsonBulkClient;
+
+    private final ElasticBulkIndexUtil<TwitterIndexModel> elasticBulkIndexUtil;
+
+    public TwitterNdjsonBulkIndexer(ElasticConfigData configData,
+                                    AvroToBulkNdjsonEncoder encoder,
+                                    ElasticNdjsonBulkClient bulkClient,
+                                    ElasticBulkIndexUtil<TwitterIndexModel> bulkIndexUtil) {
+        this.elasticConfigData = configData;
+        this.avroToBulkNdjsonEncoder = encoder;
+        this.elasticNdjsonBulkClient = bulkClient;
+        this.elasticBulkIndexUtil = bulkIndexUtil;
+    }
+
+    public List<String> index(List<TwitterAvroModel> messages, List<Long> offsets) {
+        return index(messages, offsets, elasticConfigData.getIndexName());
+    }
+
+    public List<String> index(List<TwitterAvroModel> messages, List<Long> offsets, String indexName) {
+        List<BulkRecord> records = IntStream.range(0, messages.size())
+                .mapToObj(i -> new BulkRecord(messages.get(i), offsets.get(i)))
+                .toList();
+        return elasticBulkIndexUtil.bulkIndex(records,
+                bulkRecord -> Long.toString(bulkRecord.avroModel().getId()),
+                bulkRecord -> TwitterIndexModel.estimateSizeBytes(bulkRecord.avroModel().getText()),
+                chunk -> bulkIndex(chunk, indexName));
+    }
+
+    private List<String> bulkIndex(List<BulkRecord> chunk, String indexName) {
+        List<TwitterAvroModel> avroModels = new ArrayList<>(chunk.size());
+        List<Long> offsets = new ArrayList<>(chunk.size());
+        chunk.forEach(bulkRecord -> {
+            avroModels.add(bulkRecord.avroModel());
+            offsets.add(bulkRecord.offset());
+        });
+        AvroToBulkNdjsonEncoder.BulkBuffer bulkBuffer = avroToBulkNdjsonEncoder.encode(avroModels, offsets, indexName);
+        ElasticNdjsonBulkClient.BulkResult bulkResult =
+                elasticNdjsonBulkClient.bulk(bulkBuffer.array(), bulkBuffer.size());
+        if (!bulkResult.getFailedDocuments().isEmpty()) {
+            // Same exception as a failed spring data bulk request, ElasticBulkIndexUtil retries the rejected records
+            throw new BulkFailureException("Bulk request has " + bulkResult.getFailedDocuments().size() +
+                    " failed documents", bulkResult.getFailedDocuments());
+        }
+        return bulkResult.getDocumentIds();
+    }
+
+    private record BulkRecord(TwitterAvroModel avroModel, Long offset) {
+    }
+}
@@ -0,0 +1,142 @@
+package com.microservices.demo.kafka.to.elastic.service.transformer;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.StreamWriteFeature;
+import com.microservices.demo.config.ElasticConfigData;
+import com.microservices.demo.elastic.model.index.impl.TwitterIndexModel;
+import com.microservices.demo.kafka.avro.model.TwitterAvroModel;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+/*
+ Fast path of AvroToElasticModelTransformer: writes the bulk NDJSON body directly from the avro fields, without
+ creating a TwitterIndexModel, a ZonedDateTime and an IndexQuery for every record and serializing them again with the
+ spring data mapper. Each record becomes an index action line and a source line:
+
+ {"index":{"_index":"twitter-index","_id":"1","version":42,"version_type":"external"}}
+ {"id":"1","userId":2,"text":"...","words":[...],"createdAt":"2023-11-14T22:13:20+0000"}
+
+ createdAt is written with the date pattern of TwitterIndexModel, the query services read the documents with the spring
+ data mapper, which cannot convert epoch millis to a ZonedDateTime.
+ The body is written into a byte buffer that is kept per listener thread and reused for every batch, a buffer that
+ grew above max-retained-buffer-bytes is dropped after the batch.
+ */
+@Component
+public class AvroToBulkNdjsonEncoder {
+
+    private static final JsonFactory JSON_FACTORY = JsonFactory.builder()
+            .disable(StreamWriteFeature.AUTO_CLOSE_TARGET)
+            .build();
+
+    private static final String EXTERNAL_VERSION_TYPE = "external";
+
+    private static final DateTimeFormatter CREATED_AT_FORMATTER = DateTimeFormatter
+            .ofPattern("uuuu-MM-dd'T'HH:mm:ssZZ")
+            .withZone(ZoneId.systemDefault());
+
+    private final ElasticConfigData elasticConfigData;
+
+    private final AvroToElasticModelTransformer avroToElasticModelTransformer;
+
+    private final ThreadLocal<BulkBuffer> bulkBuffers;
+
+    public AvroToBulkNdjsonEncoder(ElasticConfigData configData, AvroToElasticModelTransformer transformer) {
+        this.elasticConfigData = configData;
+        this.avroToElasticModelTransformer = transformer;
+        this.bulkBuffers = ThreadLocal.withInitial(() ->
+                new BulkBuffer(configData.getNdjsonBulk().getInitialBufferBytes()));
+    }
+
+    // The returned buffer belongs to the calling thread and is overwritten by its next encode call
+    public BulkBuffer encode(List<TwitterAvroModel> avroModels, List<Long> offsets) {
+        return encode(avroModels, offsets, elasticConfigData.getIndexName());
+    }
+
+    // indexName is the index or alias the documents are written to, e.g. the target index of a backfill
+    public BulkBuffer encode(List<TwitterAvroModel> avroModels, List<Long> offsets, String indexName) {
+        BulkBuffer bulkBuffer = getBulkBuffer();
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(bulkBuffer)) {
+            for (int i = 0; i < avroModels.size(); i++) {
+                TwitterAvroModel avroModel = avroModels.get(i);
+                writeAction(generator, indexName, avroModel,
+                        avroToElasticModelTransformer.getVersion(avroModel, offsets.get(i)));
+                writeSource(generator, avroModel);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error while encoding the bulk request", e);
+        }
+        return bulkBuffer;
+    }
+
+    private void writeAction(JsonGenerator generator, String indexName, TwitterAvroModel avroModel, Long version)
+            throws IOException {
+        generator.writeStartObject();
+        generator.writeObjectFieldStart("index");
+        generator.writeStringField("_index", indexName);
+        generator.writeStringField("_id", Long.toString(avroModel.getId()));
+        if (Boolean.TRUE.equals(elasticConfigData.getRoutingByUserId())) {
+            generator.writeStringField("routing", Long.toString(avroModel.getUserId()));
+        }
+        if (version != null) {
+            generator.writeNumberField("version", version);
+            generator.writeStringField("version_type", EXTERNAL_VERSION_TYPE);
+        }
+        generator.writeEndObject();
+        generator.writeEndObject();
+        generator.writeRaw('\n');
+    }
+
+    private void writeSource(JsonGenerator generator, TwitterAvroModel avroModel) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("id", Long.toString(avroModel.getId()));
+        generator.writeNumberField("userId", avroModel.getUserId());
+        if (avroModel.getText() != null) {
+            generator.writeStringField("text", avroModel.getText());
+            generator.writeArrayFieldStart("words");
+            for (String word : TwitterIndexModel.toWords(avroModel.getText())) {
+                generator.writeString(word);
+            }
+            generator.writeEndArray();
+        }
+        if (avroModel.getCreatedAt() != null) {
+            generator.writeStringField("createdAt",
+                    CREATED_AT_FORMATTER.format(Instant.ofEpochMilli(avroModel.getCreatedAt())));
+        }
+        generator.writeEndObject();
+        generator.writeRaw('\n');
+    }
+
+    private BulkBuffer getBulkBuffer() {
+        BulkBuffer bulkBuffer = bulkBuffers.get();
+        if (bulkBuffer.capacity() > elasticConfigData.getNdjsonBulk().getMaxRetainedBufferBytes()) {
+            bulkBuffer = new BulkBuffer(elasticConfigData.getNdjsonBulk().getInitialBufferBytes());
+            bulkBuffers.set(bulkBuffer);
+        }
+        bulkBuffer.reset();
+        return bulkBuffer;
+    }
+
+    // Gives access to the internal array, so the body is sent without copying it
+    public static class BulkBuffer extends ByteArrayOutputStream {
+
+        private BulkBuffer(int initialSize) {
+            super(initialSize);
+        }
+
+        public byte[] array() {
+            return buf;
+        }
+
+        private int capacity() {
+            return buf.length;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.microservices.demo.kafka.to.elastic.service.transformer;
 
+import com.microservices.demo.config.ElasticConfigData;
 import com.microservices.demo.elastic.model.index.impl.TwitterIndexModel;
 import com.microservices.demo.kafka.avro.model.TwitterAvroModel;
 import org.springframework.stereotype.Component;
@@ -10,20 +11,47 @@ import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.util.List;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 @Component
 public class AvroToElasticModelTransformer {
 
-    public List<TwitterIndexModel> getElasticModels(List<TwitterAvroModel> avroModels) {
-        return avroModels.stream()
-                .map(avroModel -> TwitterIndexModel
-                        .builder()
-                        .userId(avroModel.getUserId())
-                        .id(String.valueOf(avroModel.getId()))
-                        .text(avroModel.getText())
-                        .createdAt(ZonedDateTime.ofInstant(Instant.ofEpochMilli(avroModel.getCreatedAt()),
-                                ZoneId.systemDefault()))
-                        .build()
-                ).collect(Collectors.toList());
+    private static final String VERSION_SOURCE_OFFSET = "offset";
+
+    private static final String VERSION_SOURCE_CREATED_AT = "created-at";
+
+    private final ElasticConfigData elasticConfigData;
+
+    public AvroToElasticModelTransformer(ElasticConfigData configData) {
+        this.elasticConfigData = configData;
+    }
+
+    // offsets are the kafka offsets of the avro models, in the same order
+    public List<TwitterIndexModel> getElasticModels(List<TwitterAvroModel> avroModels, List<Long> offsets) {
+        return IntStream.range(0, avroModels.size())
+                .mapToObj(i -> {
+                    TwitterAvroModel avroModel = avroModels.get(i);
+                    return TwitterIndexModel
+                            .builder()
+                            .userId(avroModel.getUserId())
+                            .id(String.valueOf(avroModel.getId()))
+                            .text(avroModel.getText())
+                            .words(TwitterIndexModel.toWords(avroModel.getText()))
+                            .createdAt(ZonedDateTime.ofInstant(Instant.ofEpochMilli(avroModel.getCreatedAt()),
+                                    ZoneId.systemDefault()))
+                            .version(getVersion(avroModel, offsets.get(i)))
+                            .build();
+                }).collect(Collectors.toList());
+    }
+
+    // The external version of the document, depending on elastic-config.version-source
+    public Long getVersion(TwitterAvroModel avroModel, Long offset) {
+        String versionSource = elasticConfigData.getVersionSource();
+        if (VERSION_SOURCE_OFFSET.equals(versionSource)) {
+            return offset;
+        } else if (VERSION_SOURCE_CREATED_AT.equals(versionSource)) {
+            return avroModel.getCreatedAt();
+        }
+        return null;
     }
 }
@@ -0,0 +1,253 @@
+package com.microservices.demo.kafka.admin.advisor;
+
+import com.microservices.demo.config.KafkaConfigData;
+import com.microservices.demo.kafka.admin.advisor.model.ConsumerGroupSample;
+import com.microservices.demo.kafka.admin.advisor.model.TopicPartitionAdvice;
+import com.microservices.demo.kafka.admin.exception.KafkaClientException;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.admin.AdminClient;
+import org.apache.kafka.clients.admin.ConsumerGroupDescription;
+import org.apache.kafka.clients.admin.ConsumerGroupListing;
+import org.apache.kafka.clients.admin.OffsetSpec;
+import org.apache.kafka.clients.admin.TopicDescription;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Collectors;
+
+/*
+KafkaPartitionAdvisor recommends partition counts and consumer concurrency from observed traffic instead of a guessed
+number-of-partitions.
+
+(1) Two samples are taken sample-window-ms apart. A sample holds the log end offset of every partition of the topics
+    and the committed offsets of every consumer group that consumes them.
+(2) The log end offset delta gives the produce rate per partition, the committed offset delta gives the processing
+    rate per consumer group. A group whose lag grows within the window is saturated, so its processing rate divided
+    by its consumers is the capacity of a single consumer. For a group that keeps up, the processing rate per
+    consumer is a lower bound of that capacity.
+(3) The consumers needed = produce rate * headroom-factor / processing rate per consumer of the slowest group. The
+    headroom is applied to every estimate, not only to saturated groups, so the advice plans for the growth before
+    the lag builds up. The partitions must be at least the consumers needed, since a partition is consumed by one
+    consumer of the group.
+ */
+@Component
+@Slf4j
+@ConditionalOnExpression("'${kafka-config.partition-advisor.enabled:false}' == 'true'")
+public class KafkaPartitionAdvisor {
+
+    private final KafkaConfigData kafkaConfigData;
+
+    private final AdminClient adminClient;
+
+    public KafkaPartitionAdvisor(KafkaConfigData configData, AdminClient client) {
+        this.kafkaConfigData = configData;
+        this.adminClient = client;
+    }
+
+    public List<TopicPartitionAdvice> getPartitionAdvices() {
+        KafkaConfigData.PartitionAdvisor advisorConfig = kafkaConfigData.getPartitionAdvisor();
+        List<String> topics = advisorConfig.getTopics() == null || advisorConfig.getTopics().isEmpty() ?
+                kafkaConfigData.getTopicNamesToCreate() : advisorConfig.getTopics();
+        try {
+            Map<String, TopicDescription> topicDescriptions = adminClient.describeTopics(topics).allTopicNames().get();
+            List<TopicPartition> topicPartitions = topicDescriptions.values().stream()
+                    .flatMap(description -> description.partitions().stream()
+                            .map(partition -> new TopicPartition(description.name(), partition.partition())))
+                    .collect(Collectors.toList());
+            Map<String, Integer> groupConsumers = getGroupConsumers(topics);
+
+            OffsetSample firstSample = takeSample(topicPartitions, groupConsumers.keySet());
+            Thread.sleep(advisorConfig.getSampleWindowMs());
+            OffsetSample secondSample = takeSample(topicPartitions, groupConsumers.keySet());
+
+            return topicDescriptions.values().stream()
+                    .map(description -> getPartitionAdvice(description, groupConsumers, firstSample, secondSample))
+                    .collect(Collectors.toList());
+        } catch (ExecutionException e) {
+            log.error("Error while sampling kafka offsets {}", e.getMessage());
+            throw new KafkaClientException("Error while sampling kafka offsets!", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new KafkaClientException("Interrupted while sampling kafka offsets!", e);
+        }
+    }
+
+    private TopicPartitionAdvice getPartitionAdvice(TopicDescription description,
+                                                    Map<String, Integer> groupConsumers,
+                                                    OffsetSample firstSample,
+                                                    OffsetSample secondSample) {
+        String topic = description.name();
+        double windowSec = (secondSample.timestampMs - firstSample.timestampMs) / 1000.0;
+        Map<Integer, Double> partitionRates = new TreeMap<>();
+        description.partitions().forEach(partition -> {
+            TopicPartition topicPartition = new TopicPartition(topic, partition.partition());
+            partitionRates.put(partition.partition(), rate(firstSample.endOffsets.get(topicPartition),
+                    secondSample.endOffsets.get(topicPartition), windowSec));
+        });
+        double produceRate = partitionRates.values().stream().mapToDouble(Double::doubleValue).sum();
+
+        List<ConsumerGroupSample> groupSamples = new ArrayList<>();
+        groupConsumers.forEach((groupId, consumers) ->
+                getConsumerGroupSample(topic, groupId, consumers, firstSample, secondSample, windowSec)
+                        .ifPresent(groupSamples::add));
+
+        int currentPartitions = description.partitions().size();
+        double headroomFactor = kafkaConfigData.getPartitionAdvisor().getHeadroomFactor();
+        double targetRate = produceRate * headroomFactor;
+        Optional<ConsumerGroupSample> slowestGroup = groupSamples.stream()
+                .filter(sample -> sample.getProcessingRatePerConsumerPerSec() > 0)
+                .min(Comparator.comparing(ConsumerGroupSample::getProcessingRatePerConsumerPerSec));
+
+        int consumersNeeded;
+        String reason;
+        if (slowestGroup.isPresent()) {
+            ConsumerGroupSample group = slowestGroup.get();
+            consumersNeeded = (int) Math.ceil(targetRate / group.getProcessingRatePerConsumerPerSec());
+            String groupState = group.getSaturated() ?
+                    String.format("is saturated, lag grows by %.1f msg/s", group.getLagGrowthPerSec()) :
+                    "keeps up";
+            reason = String.format("Consumer group %s %s at %.1f msg/s per consumer. %.1f msg/s x %.1f headroom " +
+                            "needs %d consumer(s).", group.getGroupId(), groupState,
+                    group.getProcessingRatePerConsumerPerSec(), produceRate, headroomFactor, consumersNeeded);
+        } else if (groupSamples.isEmpty()) {
+            consumersNeeded = currentPartitions;
+            reason = "No consumer group has committed offsets for the topic, keeping the current partitions.";
+        } else {
+            consumersNeeded = groupSamples.stream().mapToInt(ConsumerGroupSample::getConsumers).max().orElse(1);
+            reason = "No consumer group processed messages within the sample window, keeping the current " +
+                    "consumers.";
+        }
+        consumersNeeded = Math.max(consumersNeeded, 1);
+        int recommendedPartitions = Math.max(currentPartitions, consumersNeeded);
+
+        return TopicPartitionAdvice.builder()
+                .topic(topic)
+                .currentPartitions(currentPartitions)
+                .sampleWindowMs(secondSample.timestampMs - firstSample.timestampMs)
+                .headroomFactor(headroomFactor)
+                .produceRatePerSec(produceRate)
+                .partitionProduceRatesPerSec(partitionRates)
+                .consumerGroups(groupSamples)
+                .recommendedPartitions(recommendedPartitions)
+                .recommendedConsumerConcurrency(Math.min(consumersNeeded, recommendedPartitions))
+                .reason(reason)
+                .build();
+    }
+
+    private Optional<ConsumerGroupSample> getConsumerGroupSample(String topic,
+                                                                 String groupId,
+                                                                 int consumers,
+                                                                 OffsetSample firstSample,
+                                                                 OffsetSample secondSample,
+                                                                 double windowSec) {
+        Map<TopicPartition, Long> firstCommitted = getTopicOffsets(firstSample.committedOffsets.get(groupId), topic);
+        Map<TopicPartition, Long> secondCommitted = getTopicOffsets(secondSample.committedOffsets.get(groupId), topic);
+        if (secondCommitted.isEmpty()) {
+            return Optional.empty();
+        }
+        double processingRate = secondCommitted.entrySet().stream()
+                .mapToDouble(entry -> rate(firstCommitted.get(entry.getKey()), entry.getValue(), windowSec))
+                .sum();
+        long firstLag = getLag(firstSample.endOffsets, firstCommitted);
+        long secondLag = getLag(secondSample.endOffsets, secondCommitted);
+        double lagGrowth = (secondLag - firstLag) / windowSec;
+        return Optional.of(ConsumerGroupSample.builder()
+                .groupId(groupId)
+                .consumers(consumers)
+                .processingRatePerSec(processingRate)
+                .processingRatePerConsumerPerSec(consumers > 0 ? processingRate / consumers : 0)
+                .lag(secondLag)
+                .lagGrowthPerSec(lagGrowth)
+                .saturated(lagGrowth > 0)
+                .build());
+    }
+
+    // Consumer groups with at least one member assigned to one of the topics, with the number of those members
+    private Map<String, Integer> getGroupConsumers(List<String> topics) throws ExecutionException, InterruptedException {
+        List<String> groupIds = adminClient.listConsumerGroups().all().get().stream()
+                .map(ConsumerGroupListing::groupId)
+                .collect(Collectors.toList());
+        Map<String, Integer> groupConsumers = new HashMap<>();
+        if (groupIds.isEmpty()) {
+            return groupConsumers;
+        }
+        Collection<ConsumerGroupDescription> groupDescriptions =
+                adminClient.describeConsumerGroups(groupIds).all().get().values();
+        groupDescriptions.forEach(groupDescription -> {
+            int consumers = (int) groupDescription.members().stream()
+                    .filter(member -> member.assignment().topicPartitions().stream()
+                            .anyMatch(topicPartition -> topics.contains(topicPartition.topic())))
+                    .count();
+            if (consumers > 0) {
+                groupConsumers.put(groupDescription.groupId(), consumers);
+            }
+        });
+        return groupConsumers;
+    }
+
+    private OffsetSample takeSample(List<TopicPartition> topicPartitions, Collection<String> groupIds)
+            throws ExecutionException, InterruptedException {
+        Map<TopicPartition, OffsetSpec> latestOffsetSpecs = topicPartitions.stream()
+                .collect(Collectors.toMap(topicPartition -> topicPartition, topicPartition -> OffsetSpec.latest()));
+        Map<TopicPartition, Long> endOffsets = new HashMap<>();
+        adminClient.listOffsets(latestOffsetSpecs).all().get()
+                .forEach((topicPartition, offsetInfo) -> endOffsets.put(topicPartition, offsetInfo.offset()));
+
+        Map<String, Map<TopicPartition, OffsetAndMetadata>> committedOffsets = new HashMap<>();
+        for (String groupId : groupIds) {
+            committedOffsets.put(groupId,
+                    adminClient.listConsumerGroupOffsets(groupId).partitionsToOffsetAndMetadata().get());
+        }
+        return new OffsetSample(System.currentTimeMillis(), endOffsets, committedOffsets);
+    }
+
+    private Map<TopicPartition, Long> getTopicOffsets(Map<TopicPartition, OffsetAndMetadata> offsets, String topic) {
+        Map<TopicPartition, Long> topicOffsets = new HashMap<>();
+        if (offsets != null) {
+            offsets.forEach((topicPartition, offsetAndMetadata) -> {
+                if (offsetAndMetadata != null && topic.equals(topicPartition.topic())) {
+                    topicOffsets.put(topicPartition, offsetAndMetadata.offset());
+                }
+            });
+        }
+        return topicOffsets;
+    }
+
+    private long getLag(Map<TopicPartition, Long> endOffsets, Map<TopicPartition, Long> committedOffsets) {
+        return committedOffsets.entrySet().stream()
+                .mapToLong(entry -> Math.max(0, endOffsets.getOrDefault(entry.getKey(), 0L) - entry.getValue()))
+                .sum();
+    }
+
+    private double rate(Long firstOffset, Long secondOffset, double windowSec) {
+        if (firstOffset == null || secondOffset == null || windowSec <= 0) {
+            return 0;
+        }
+        return (secondOffset - firstOffset) / windowSec;
+    }
+
+    private static class OffsetSample {
+        private final long timestampMs;
+        private final Map<TopicPartition, Long> endOffsets;
+        private final Map<String, Map<TopicPartition, OffsetAndMetadata>> committedOffsets;
+
+        private OffsetSample(long timestampMs,
+                             Map<TopicPartition, Long> endOffsets,
+                             Map<String, Map<TopicPartition, OffsetAndMetadata>> committedOffsets) {
+            this.timestampMs = timestampMs;
+            this.endOffsets = endOffsets;
+            this.committedOffsets = committedOffsets;
+        }
+    }
+}
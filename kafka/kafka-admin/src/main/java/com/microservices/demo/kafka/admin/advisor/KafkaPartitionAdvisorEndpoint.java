@@ -0,0 +1,31 @@
+package com.microservices.demo.kafka.admin.advisor;
+
+import com.microservices.demo.kafka.admin.advisor.model.TopicPartitionAdvice;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ Exposes the partition and consumer concurrency recommendations of KafkaPartitionAdvisor as actuator endpoint
+ /actuator/partitionadvisor, it has to be added to management.endpoints.web.exposure.include.
+ Each read samples the offsets for kafka-config.partition-advisor.sample-window-ms before returning.
+ */
+@Component
+@Endpoint(id = "partitionadvisor")
+@ConditionalOnExpression("'${kafka-config.partition-advisor.enabled:false}' == 'true'")
+public class KafkaPartitionAdvisorEndpoint {
+
+    private final KafkaPartitionAdvisor kafkaPartitionAdvisor;
+
+    public KafkaPartitionAdvisorEndpoint(KafkaPartitionAdvisor partitionAdvisor) {
+        this.kafkaPartitionAdvisor = partitionAdvisor;
+    }
+
+    @ReadOperation
+    public List<TopicPartitionAdvice> partitionAdvices() {
+        return kafkaPartitionAdvisor.getPartitionAdvices();
+    }
+}
@@ -0,0 +1,20 @@
+package com.microservices.demo.kafka.admin.advisor.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ConsumerGroupSample {
+    private String groupId;
+    private Integer consumers;
+    private Double processingRatePerSec;
+    private Double processingRatePerConsumerPerSec;
+    private Long lag;
+    private Double lagGrowthPerSec;
+    private Boolean saturated;
+}
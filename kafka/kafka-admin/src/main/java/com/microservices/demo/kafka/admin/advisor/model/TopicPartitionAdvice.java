@@ -0,0 +1,26 @@
+package com.microservices.demo.kafka.admin.advisor.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TopicPartitionAdvice {
+    private String topic;
+    private Integer currentPartitions;
+    private Long sampleWindowMs;
+    private Double headroomFactor;
+    private Double produceRatePerSec;
+    private Map<Integer, Double> partitionProduceRatesPerSec;
+    private List<ConsumerGroupSample> consumerGroups;
+    private Integer recommendedPartitions;
+    private Integer recommendedConsumerConcurrency;
+    private String reason;
+}
@@ -7,7 +7,11 @@ import lombok.extern.slf4j.Slf4j;
 import org.apache.kafka.clients.admin.AdminClient;
 import org.apache.kafka.clients.admin.CreateTopicsResult;
 import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.clients.admin.TopicDescription;
 import org.apache.kafka.clients.admin.TopicListing;
+import org.apache.kafka.common.KafkaFuture;
+import org.apache.kafka.common.errors.RetriableException;
+import org.apache.kafka.common.errors.UnknownTopicOrPartitionException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpMethod;
@@ -20,10 +24,19 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.client.ClientResponse;
 import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
 
+import java.time.Duration;
 import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
 
 /*
@@ -46,6 +59,8 @@ The kafka-admin module [KafkaAdminClient.java]   depends  on the other module cl
 @Slf4j
 public class KafkaAdminClient {
 
+    private static final String SCHEMA_REGISTRY = "schema-registry";
+
   //  private static final Logger LOG = LoggerFactory.getLogger(KafkaAdminClient.class);
 
     // The KafkaConfigData is a Configuration class that includes from  Module =  app-config-data module
@@ -86,17 +101,22 @@ public class KafkaAdminClient {
 
          private final WebClient webClient;
 
+    // Provides the per topic partitions and topic configs defined in kafka-config.topics
+    private final KafkaTopicConfigReconciler kafkaTopicConfigReconciler;
+
 // Constructor injection for setting all the above properties
     public KafkaAdminClient(KafkaConfigData config,
                             RetryConfigData retryConfigData,
                             AdminClient client,
                             RetryTemplate template,
-                            WebClient webClient) {
+                            WebClient webClient,
+                            KafkaTopicConfigReconciler topicConfigReconciler) {
         this.kafkaConfigData = config;
         this.retryConfigData = retryConfigData;
         this.adminClient = client;
         this.retryTemplate = template;
         this.webClient = webClient;
+        this.kafkaTopicConfigReconciler = topicConfigReconciler;
     }
 
   /**
@@ -128,7 +148,7 @@ public class KafkaAdminClient {
             log.error("Reached max number of retry for creating kafka topic(s)! {}", t.getMessage());
             throw new KafkaClientException("Reached max number of retry for creating kafka topic(s)!", t);
         }
-        checkTopicsCreated();
+        // The created topics are checked together with the schema registry in checkReadiness()
     }
 
     // Check if the Topic is created with retry option
@@ -178,6 +198,126 @@ public class KafkaAdminClient {
         }
     }
 
+    /**
+     Waits for all topics in topic-names-to-create and the schema registry in one pass, instead of the sequential
+     checkTopicsCreated() + checkSchemaRegistry() calls.
+     1. A single describeTopics() request is issued for all topics, a topic that is not created yet is described again
+        on its own with exponential backoff, so one slow topic does not delay the check of the others.
+     2. The schema registry is probed at the same time with a non-blocking WebClient call.
+     3. All dependencies share one deadline (kafka-config.readiness-timeout-ms).
+     4. Only a topic that does not exist yet, a timeout or another retriable kafka error is described again. Any other
+        error (authorization, invalid config) fails the check at once, without waiting for the other dependencies.
+     Returns the time in ms it took for each dependency to become ready, keyed by topic name and "schema-registry".
+     */
+    public Map<String, Long> checkReadiness() {
+        long startNanos = System.nanoTime();
+        long deadlineNanos = startNanos + TimeUnit.MILLISECONDS.toNanos(kafkaConfigData.getReadinessTimeoutMs());
+        Map<String, CompletableFuture<Long>> readinessFutures = new LinkedHashMap<>();
+        adminClient.describeTopics(kafkaConfigData.getTopicNamesToCreate()).topicNameValues()
+                .forEach((topicName, describeFuture) -> readinessFutures.put(topicName,
+                        awaitTopic(topicName, describeFuture, startNanos, deadlineNanos,
+                                retryConfigData.getSleepTimeMs())));
+        readinessFutures.put(SCHEMA_REGISTRY, awaitSchemaRegistry(startNanos));
+        CompletableFuture<Void> firstFailure = new CompletableFuture<>();
+        readinessFutures.values().forEach(future -> future.whenComplete((readinessTimeMs, ex) -> {
+            if (ex != null) {
+                firstFailure.completeExceptionally(unwrap(ex));
+            }
+        }));
+
+        CompletableFuture<Void> allReady =
+                CompletableFuture.allOf(readinessFutures.values().toArray(new CompletableFuture[0]));
+
+        try {
+            CompletableFuture.anyOf(allReady, firstFailure)
+                    .get(kafkaConfigData.getReadinessTimeoutMs(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            List<String> notReady = readinessFutures.entrySet().stream()
+                    .filter(entry -> !entry.getValue().isDone())
+                    .map(Map.Entry::getKey)
+                    .collect(Collectors.toList());
+            readinessFutures.values().forEach(future -> future.cancel(true));
+            log.error("Dependencies {} are not ready after {} ms", notReady, kafkaConfigData.getReadinessTimeoutMs());
+            throw new KafkaClientException("Dependencies " + notReady + " are not ready after " +
+                    kafkaConfigData.getReadinessTimeoutMs() + " ms!", e);
+        } catch (ExecutionException e) {
+            readinessFutures.values().forEach(future -> future.cancel(true));
+            log.error("Error while checking readiness of kafka topic(s) and schema registry {}", e.getMessage());
+            throw new KafkaClientException("Error while checking readiness of kafka topic(s) and schema registry!",
+                    e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new KafkaClientException("Interrupted while checking readiness of kafka topic(s) and schema registry!", e);
+        }
+
+        Map<String, Long> readinessTimesMs = new LinkedHashMap<>();
+        readinessFutures.forEach((dependency, future) -> readinessTimesMs.put(dependency, future.join()));
+        log.info("Kafka topic(s) and schema registry are ready in {} ms, readiness time per dependency in ms {}",
+                elapsedMs(startNanos), readinessTimesMs);
+        return readinessTimesMs;
+    }
+
+    // Completes with the readiness time of the topic, describes the topic again with backoff until the deadline
+    private CompletableFuture<Long> awaitTopic(String topicName,
+                                               KafkaFuture<TopicDescription> describeFuture,
+                                               long startNanos,
+                                               long deadlineNanos,
+                                               long backOffMs) {
+        return describeFuture.toCompletionStage()
+                .toCompletableFuture()
+                .thenApply(topicDescription -> {
+                    log.info("Topic {} is created with {} partition(s)", topicName,
+                            topicDescription.partitions().size());
+                    return elapsedMs(startNanos);
+                })
+                .exceptionallyCompose(ex -> {
+                    if (!isRetriable(unwrap(ex)) ||
+                            System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(backOffMs) > deadlineNanos) {
+                        return CompletableFuture.failedFuture(ex);
+                    }
+                    log.info("Topic {} is not ready yet ({}), describing again in {} ms", topicName,
+                            unwrap(ex).getMessage(), backOffMs);
+                    Executor delayedExecutor = CompletableFuture.delayedExecutor(backOffMs, TimeUnit.MILLISECONDS);
+                    long nextBackOffMs = Math.min((long) (backOffMs * retryConfigData.getMultiplier()),
+                            retryConfigData.getMaxIntervalMs());
+                    return CompletableFuture
+                            .supplyAsync(() -> adminClient.describeTopics(List.of(topicName))
+                                    .topicNameValues().get(topicName), delayedExecutor)
+                            .thenCompose(nextDescribeFuture -> awaitTopic(topicName, nextDescribeFuture,
+                                    startNanos, deadlineNanos, nextBackOffMs));
+                });
+    }
+
+    // Completes with the readiness time of the schema registry, polls it with backoff until it returns 2xx
+    private CompletableFuture<Long> awaitSchemaRegistry(long startNanos) {
+        return webClient
+                .method(HttpMethod.GET)
+                .uri(kafkaConfigData.getSchemaRegistryUrl())
+                .exchangeToMono(response -> Mono.just(response.statusCode()))
+                .filter(HttpStatusCode::is2xxSuccessful)
+                .switchIfEmpty(Mono.error(() -> new KafkaClientException("Schema registry is not ready yet!")))
+                .doOnError(e -> log.info("Schema registry is not ready yet ({})", e.getMessage()))
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofMillis(retryConfigData.getSleepTimeMs()))
+                        .maxBackoff(Duration.ofMillis(retryConfigData.getMaxIntervalMs())))
+                .map(status -> elapsedMs(startNanos))
+                .toFuture();
+    }
+
+    // A topic that is not created yet is reported as unknown, a slow broker as a timeout
+    private boolean isRetriable(Throwable t) {
+        return t instanceof UnknownTopicOrPartitionException ||
+                t instanceof org.apache.kafka.common.errors.TimeoutException ||
+                t instanceof RetriableException;
+    }
+
+    private long elapsedMs(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+
+    private Throwable unwrap(Throwable t) {
+        return t instanceof CompletionException && t.getCause() != null ? t.getCause() : t;
+    }
+
     /**
       Make a REST call to the SchemaRegistry URL defined in the configuration file to check if the SchemaRegistry is up.
       If the REST call fails, then return SERVICE_UNAVAILABLE status.
@@ -239,8 +379,8 @@ public class KafkaAdminClient {
         List<NewTopic> kafkaTopics = topicToBeCreated.stream()
                                      .map(topic ->
                                       { // Create a NewTopic object for each topic name to be created,
-                                         return new NewTopic(topic.trim(), kafkaConfigData.getNumOfPartitions(),
-                                                              kafkaConfigData.getReplicationFactor());
+                                        // with the partitions and topic configs from kafka-config.topics if defined
+                                         return newTopic(topic.trim());
                                       }).collect(Collectors.toList());
 
       /*
@@ -255,9 +395,7 @@ public class KafkaAdminClient {
         log.info("Creating {} Number of topics(s), The current Retry attempt {}", topicToBeCreated.size(), retryContext.getRetryCount());
 
         List<NewTopic> kafkaTopics = topicToBeCreated.stream()
-                .map(topic -> new NewTopic(topic.trim(),
-                                     kafkaConfigData.getNumOfPartitions(),
-                                     kafkaConfigData.getReplicationFactor()))
+                .map(topic -> newTopic(topic.trim()))
                 .collect(Collectors.toList());
 
         CreateTopicsResult createTopicsResult = adminClient.createTopics(kafkaTopics);
@@ -279,6 +417,13 @@ public class KafkaAdminClient {
         return createTopicsResult;
     }
 
+    private NewTopic newTopic(String topicName) {
+        return new NewTopic(topicName,
+                kafkaTopicConfigReconciler.getNumOfPartitions(topicName),
+                kafkaConfigData.getReplicationFactor())
+                .configs(kafkaTopicConfigReconciler.getTopicConfigs(topicName));
+    }
+
    // Fetch the topics created from the adminClient
     private Collection<TopicListing> getTopics() {
         Collection<TopicListing> topics;
@@ -0,0 +1,186 @@
+package com.microservices.demo.kafka.admin.client;
+
+import com.microservices.demo.config.KafkaConfigData;
+import com.microservices.demo.kafka.admin.exception.KafkaClientException;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.admin.AdminClient;
+import org.apache.kafka.clients.admin.AlterConfigOp;
+import org.apache.kafka.clients.admin.Config;
+import org.apache.kafka.clients.admin.ConfigEntry;
+import org.apache.kafka.clients.admin.NewPartitions;
+import org.apache.kafka.clients.admin.TopicDescription;
+import org.apache.kafka.common.config.ConfigResource;
+import org.apache.kafka.common.config.TopicConfig;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Collectors;
+
+/*
+KafkaTopicConfigReconciler brings existing topics in line with the per topic block (kafka-config.topics) defined in
+KafkaConfigData.
+
+(1) The desired topic configs (retention, segment size, compression, min.insync.replicas, cleanup policy) are compared
+    with the current configs returned by describeConfigs, and only the differing entries are set with
+    incrementalAlterConfigs. Configs that are not in the block are left as they are.
+
+(2) If num-of-partitions of a topic is greater than the current partition count, the partitions are increased with
+    createPartitions. Partitions can not be decreased, so a smaller value is only logged.
+
+(3) Only topics that already exist are reconciled. A topic in the block that is not created yet is skipped and gets
+    its configs and partitions when it is created with createTopics(), so reconcileTopics() runs after createTopics().
+ */
+@Component
+@Slf4j
+public class KafkaTopicConfigReconciler {
+
+    private final KafkaConfigData kafkaConfigData;
+
+    private final AdminClient adminClient;
+
+    public KafkaTopicConfigReconciler(KafkaConfigData configData, AdminClient client) {
+        this.kafkaConfigData = configData;
+        this.adminClient = client;
+    }
+
+    public void reconcileTopics() {
+        Map<String, KafkaConfigData.Topic> topics = kafkaConfigData.getTopics();
+        if (topics == null || topics.isEmpty()) {
+            log.info("No topic config defined, topics keep the broker defaults");
+            return;
+        }
+        try {
+            Map<String, KafkaConfigData.Topic> existingTopics = getExistingTopics(topics);
+            if (existingTopics.isEmpty()) {
+                return;
+            }
+            reconcileConfigs(existingTopics);
+            reconcilePartitions(existingTopics);
+        } catch (ExecutionException e) {
+            log.error("Error while reconciling kafka topic config(s) {}", e.getMessage());
+            throw new KafkaClientException("Error while reconciling kafka topic config(s)!", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new KafkaClientException("Interrupted while reconciling kafka topic config(s)!", e);
+        }
+    }
+
+    // The desired topic configs of the topic, keyed by the kafka topic config name, used also when creating the topic
+    public Map<String, String> getTopicConfigs(String topicName) {
+        KafkaConfigData.Topic topic = kafkaConfigData.getTopics() == null ? null :
+                kafkaConfigData.getTopics().get(topicName);
+        if (topic == null) {
+            return Collections.emptyMap();
+        }
+        Map<String, String> topicConfigs = new LinkedHashMap<>();
+        putIfPresent(topicConfigs, TopicConfig.RETENTION_MS_CONFIG, topic.getRetentionMs());
+        putIfPresent(topicConfigs, TopicConfig.SEGMENT_BYTES_CONFIG, topic.getSegmentBytes());
+        putIfPresent(topicConfigs, TopicConfig.COMPRESSION_TYPE_CONFIG, topic.getCompressionType());
+        putIfPresent(topicConfigs, TopicConfig.MIN_IN_SYNC_REPLICAS_CONFIG, topic.getMinInsyncReplicas());
+        putIfPresent(topicConfigs, TopicConfig.CLEANUP_POLICY_CONFIG, topic.getCleanupPolicy());
+        return topicConfigs;
+    }
+
+    // The partition count of the topic, falls back to kafka-config.num-of-partitions
+    public Integer getNumOfPartitions(String topicName) {
+        KafkaConfigData.Topic topic = kafkaConfigData.getTopics() == null ? null :
+                kafkaConfigData.getTopics().get(topicName);
+        return topic != null && topic.getNumOfPartitions() != null ?
+                topic.getNumOfPartitions() : kafkaConfigData.getNumOfPartitions();
+    }
+
+    private Map<String, KafkaConfigData.Topic> getExistingTopics(Map<String, KafkaConfigData.Topic> topics)
+            throws ExecutionException, InterruptedException {
+        Set<String> topicNames = adminClient.listTopics().names().get();
+        Map<String, KafkaConfigData.Topic> existingTopics = new LinkedHashMap<>();
+        topics.forEach((topicName, topic) -> {
+            if (topicNames.contains(topicName)) {
+                existingTopics.put(topicName, topic);
+            } else {
+                log.warn("Topic {} does not exist, its config is applied when the topic is created", topicName);
+            }
+        });
+        return existingTopics;
+    }
+
+    private void reconcileConfigs(Map<String, KafkaConfigData.Topic> topics)
+            throws ExecutionException, InterruptedException {
+        List<ConfigResource> configResources = topics.keySet().stream()
+                .map(topicName -> new ConfigResource(ConfigResource.Type.TOPIC, topicName))
+                .collect(Collectors.toList());
+        Map<ConfigResource, Config> currentConfigs = adminClient.describeConfigs(configResources).all().get();
+
+        Map<ConfigResource, Collection<AlterConfigOp>> alterations = new HashMap<>();
+        currentConfigs.forEach((configResource, currentConfig) -> {
+            List<AlterConfigOp> alterConfigOps = getTopicConfigs(configResource.name()).entrySet().stream()
+                    .filter(desired -> isChanged(currentConfig.get(desired.getKey()), desired.getValue()))
+                    .map(desired -> {
+                        log.info("Topic {} config {} will be changed from {} to {}", configResource.name(),
+                                desired.getKey(), getValue(currentConfig.get(desired.getKey())), desired.getValue());
+                        return new AlterConfigOp(new ConfigEntry(desired.getKey(), desired.getValue()),
+                                AlterConfigOp.OpType.SET);
+                    })
+                    .collect(Collectors.toList());
+            if (!alterConfigOps.isEmpty()) {
+                alterations.put(configResource, alterConfigOps);
+            }
+        });
+
+        if (alterations.isEmpty()) {
+            log.info("Topic configs of {} are up to date", topics.keySet());
+            return;
+        }
+        adminClient.incrementalAlterConfigs(alterations).all().get();
+        log.info("Topic configs altered for {}", alterations.keySet().stream()
+                .map(ConfigResource::name)
+                .collect(Collectors.toList()));
+    }
+
+    private void reconcilePartitions(Map<String, KafkaConfigData.Topic> topics)
+            throws ExecutionException, InterruptedException {
+        Map<String, TopicDescription> topicDescriptions =
+                adminClient.describeTopics(topics.keySet()).allTopicNames().get();
+
+        Map<String, NewPartitions> newPartitions = new HashMap<>();
+        topicDescriptions.forEach((topicName, topicDescription) -> {
+            Integer desiredPartitions = topics.get(topicName).getNumOfPartitions();
+            int currentPartitions = topicDescription.partitions().size();
+            if (desiredPartitions == null || desiredPartitions == currentPartitions) {
+                return;
+            }
+            if (desiredPartitions < currentPartitions) {
+                log.warn("Topic {} has {} partitions, can not decrease to {}", topicName, currentPartitions,
+                        desiredPartitions);
+                return;
+            }
+            log.info("Topic {} partitions will be increased from {} to {}", topicName, currentPartitions,
+                    desiredPartitions);
+            newPartitions.put(topicName, NewPartitions.increaseTo(desiredPartitions));
+        });
+
+        if (!newPartitions.isEmpty()) {
+            adminClient.createPartitions(newPartitions).all().get();
+        }
+    }
+
+    private boolean isChanged(ConfigEntry currentEntry, String desiredValue) {
+        return currentEntry == null || !desiredValue.equals(currentEntry.value());
+    }
+
+    private String getValue(ConfigEntry configEntry) {
+        return configEntry == null ? null : configEntry.value();
+    }
+
+    private void putIfPresent(Map<String, String> topicConfigs, String configName, Object value) {
+        if (value != null) {
+            topicConfigs.put(configName, String.valueOf(value));
+        }
+    }
+}
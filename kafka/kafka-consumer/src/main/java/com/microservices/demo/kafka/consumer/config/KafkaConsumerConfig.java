@@ -4,23 +4,33 @@ import com.microservices.demo.config.KafkaConfigData;
 import com.microservices.demo.config.KafkaConsumerConfigData;
 import org.apache.avro.specific.SpecificRecordBase;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.kafka.annotation.EnableKafka;
 import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
 import org.springframework.kafka.config.KafkaListenerContainerFactory;
 import org.springframework.kafka.core.ConsumerFactory;
 import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
 import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+import org.springframework.kafka.listener.ContainerProperties;
 
 import java.io.Serializable;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ThreadFactory;
 
 @EnableKafka
 @Configuration
 public class KafkaConsumerConfig<K extends Serializable, V extends SpecificRecordBase> {
 
+    private static final Logger LOG = LoggerFactory.getLogger(KafkaConsumerConfig.class);
+
+    private static final String VIRTUAL_LISTENER_THREAD_PREFIX = "kafka-virtual-listener-";
+
     private final KafkaConfigData kafkaConfigData;
 
     private final KafkaConsumerConfigData kafkaConsumerConfigData;
@@ -68,6 +78,43 @@ public class KafkaConsumerConfig<K extends Serializable, V extends SpecificRecor
         // THis is used to set the auto startup of the listener container , set this to false if you want to start the listener manually
         factory.setAutoStartup(kafkaConsumerConfigData.getAutoStartup());
         factory.getContainerProperties().setPollTimeout(kafkaConsumerConfigData.getPollTimeoutMs());
+        // MANUAL ack mode lets the listener commit the offsets of a batch only after it is processed, the
+        // acknowledgment can also be called from the thread that completes the processing
+        if (kafkaConsumerConfigData.getAckMode() != null) {
+            factory.getContainerProperties().setAckMode(
+                    ContainerProperties.AckMode.valueOf(kafkaConsumerConfigData.getAckMode()));
+        }
+        if (Boolean.TRUE.equals(kafkaConsumerConfigData.getVirtualThreadsEnabled())) {
+            AsyncTaskExecutor listenerTaskExecutor = virtualThreadListenerTaskExecutor();
+            if (listenerTaskExecutor != null) {
+                factory.getContainerProperties().setListenerTaskExecutor(listenerTaskExecutor);
+            }
+        }
         return factory;
     }
+
+    /*
+     Each consumer of the container runs its poll loop and the listener (receive method) on a thread taken from the
+     listener task executor. With virtual threads, the blocking sink calls inside receive (bulk index over HTTP,
+     JPA persist) park a cheap virtual thread instead of holding a platform thread, so concurrency-level can be raised
+     to the partition count without sizing a large platform thread pool.
+     The build targets Java 17, so Thread.ofVirtual() is resolved reflectively; on older runtimes the container keeps
+     the default platform thread executor.
+     */
+    private AsyncTaskExecutor virtualThreadListenerTaskExecutor() {
+        try {
+            Object threadBuilder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builderClass.getMethod("name", String.class, long.class)
+                    .invoke(threadBuilder, VIRTUAL_LISTENER_THREAD_PREFIX, 0L);
+            ThreadFactory virtualThreadFactory = (ThreadFactory) builderClass.getMethod("factory").invoke(threadBuilder);
+            SimpleAsyncTaskExecutor taskExecutor = new SimpleAsyncTaskExecutor(virtualThreadFactory);
+            LOG.info("Kafka listener containers will run on virtual threads");
+            return taskExecutor;
+        } catch (ReflectiveOperationException e) {
+            LOG.warn("Virtual threads are not supported by the current runtime {}, using platform threads for " +
+                    "kafka listener containers", Runtime.version());
+            return null;
+        }
+    }
 }
@@ -2,6 +2,7 @@ package com.microservices.demo.twitter.to.kafka.service.init.impl;
 
 import com.microservices.demo.config.KafkaConfigData;
 import com.microservices.demo.kafka.admin.client.KafkaAdminClient;
+import com.microservices.demo.kafka.admin.client.KafkaTopicConfigReconciler;
 import com.microservices.demo.twitter.to.kafka.service.init.StreamInitializer;
 import lombok.extern.slf4j.Slf4j;
 import org.slf4j.Logger;
@@ -26,16 +27,24 @@ public class KafkaStreamInitializer implements StreamInitializer {
     // Create the Topic at start up we use KafkaAdminClient . Include the module = kafka-admin
     private final KafkaAdminClient kafkaAdminClient;
 
-    public KafkaStreamInitializer(KafkaConfigData configData, KafkaAdminClient adminClient) {
+    // Applies kafka-config.topics (topic configs, partition count) to the topics that already existed
+    private final KafkaTopicConfigReconciler kafkaTopicConfigReconciler;
+
+    public KafkaStreamInitializer(KafkaConfigData configData,
+                                  KafkaAdminClient adminClient,
+                                  KafkaTopicConfigReconciler topicConfigReconciler) {
         this.kafkaConfigData = configData;
         this.kafkaAdminClient = adminClient;
+        this.kafkaTopicConfigReconciler = topicConfigReconciler;
     }
 
     @Override
     public void init() {
         // We create Kafka topic using KafkaAdmin
         kafkaAdminClient.createTopics();
-        kafkaAdminClient.checkSchemaRegistry();
+        // Wait for the created topics and the schema registry concurrently
+        kafkaAdminClient.checkReadiness();
+        kafkaTopicConfigReconciler.reconcileTopics();
       //  LOG.info("Topics with name {} is ready for operations!", kafkaConfigData.getTopicNamesToCreate().toArray());
           log.info("Topics with name {} is ready for operations!", kafkaConfigData.getTopicNamesToCreate().toArray());
     }